@@ -0,0 +1,44 @@
+package com.deepmock;
+
+import org.aopalliance.aop.Advice;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.framework.Advised;
+
+/**
+ * A change made to the configuration of a proxy while injecting mocks: either advice added to it or its TargetSource
+ * replaced.
+ */
+public class AdvisedChange {
+    private Advised advised;
+    private Advice addedAdvice;
+    private TargetSource origTargetSource;
+    private Object pinnedTarget;
+
+    public static AdvisedChange adviceAdded(Advised advised, Advice advice) {
+        return new AdvisedChange(advised, advice, null, null);
+    }
+
+    public static AdvisedChange targetSourceReplaced(Advised advised, TargetSource origTargetSource, Object pinnedTarget) {
+        return new AdvisedChange(advised, null, origTargetSource, pinnedTarget);
+    }
+
+    private AdvisedChange(Advised advised, Advice addedAdvice, TargetSource origTargetSource, Object pinnedTarget) {
+        this.advised = advised;
+        this.addedAdvice = addedAdvice;
+        this.origTargetSource = origTargetSource;
+        this.pinnedTarget = pinnedTarget;
+    }
+
+    public void removeAdvice() {
+        if (addedAdvice != null) {
+            advised.removeAdvice(addedAdvice);
+        }
+    }
+
+    public void restoreTargetSource() throws Exception {
+        if (origTargetSource != null) {
+            advised.setTargetSource(origTargetSource);
+            origTargetSource.releaseTarget(pinnedTarget);
+        }
+    }
+}
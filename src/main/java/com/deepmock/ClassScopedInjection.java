@@ -0,0 +1,51 @@
+package com.deepmock;
+
+import org.springframework.core.annotation.AnnotationUtils;
+
+/**
+ * Injects mocks once for a test class (see {@link InjectionScope#CLASS}).  The mocks created for the first test
+ * instance are injected into the object graph of the subject and handed to every later test instance by a
+ * {@link MockPool}.  As the identity of the mocks does not change, the injected fields stay valid between test methods.
+ */
+final class ClassScopedInjection {
+    private final boolean onlySpringFields;
+    private DeepMockHandler deepMockHandler;
+    private MockPool mockPool;
+
+    ClassScopedInjection(boolean onlySpringFields) {
+        this.onlySpringFields = onlySpringFields;
+    }
+
+    static boolean isClassScoped(Class<?> testClass) {
+        DeepMockConfiguration configuration = AnnotationUtils.findAnnotation(testClass, DeepMockConfiguration.class);
+        return configuration != null && configuration.scope() == InjectionScope.CLASS;
+    }
+
+    void beforeTestMethod(Object testInstance) {
+        if (mockPool == null) {
+            mockPool = new MockPool(testInstance.getClass());
+        }
+        mockPool.populate(testInstance);
+        if (deepMockHandler == null) {
+            DeepMockHandler handler = new DeepMockHandler(testInstance);
+            try {
+                handler.injectMocksIntoObjectGraphOfSubject(onlySpringFields);
+            } catch (RuntimeException e) {
+                handler.restoreOriginalFields();
+                throw e;
+            }
+            deepMockHandler = handler;
+        }
+    }
+
+    void afterTestClass() {
+        if (deepMockHandler != null) {
+            try {
+                deepMockHandler.restoreOriginalFields();
+            } finally {
+                deepMockHandler = null;
+                mockPool = null;
+            }
+        }
+    }
+}
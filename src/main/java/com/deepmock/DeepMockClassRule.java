@@ -0,0 +1,58 @@
+package com.deepmock;
+
+import org.junit.rules.MethodRule;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+/**
+ * Class scoped alternative to {@link DeepMockRule} (see {@link InjectionScope#CLASS}).  The mocks are injected into the
+ * object graph of your subject before the first test method and the graph is restored after the last one.  Between test
+ * methods the same mocks are reset and set on each new test instance.
+ *
+ * The rule must be registered both as a class rule and, through {@link #forEachTest()}, as a method rule:
+ * <code>
+ *     &#64;ClassRule
+ *     public static DeepMockClassRule deepMockClassRule = new DeepMockClassRule();
+ *
+ *     &#64;Rule
+ *     public MethodRule deepMockRule = deepMockClassRule.forEachTest();
+ * </code>
+ * @see DeepMockRule
+ */
+public final class DeepMockClassRule implements TestRule {
+    private final ClassScopedInjection injection = new ClassScopedInjection(false);
+
+    @Override
+    public Statement apply(final Statement base, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                try {
+                    base.evaluate();
+                } finally {
+                    injection.afterTestClass();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return The rule to apply to each test method to hand the class scoped mocks to the test instance
+     */
+    public MethodRule forEachTest() {
+        return new MethodRule() {
+            @Override
+            public Statement apply(final Statement base, FrameworkMethod method, final Object target) {
+                return new Statement() {
+                    @Override
+                    public void evaluate() throws Throwable {
+                        injection.beforeTestMethod(target);
+                        base.evaluate();
+                    }
+                };
+            }
+        };
+    }
+}
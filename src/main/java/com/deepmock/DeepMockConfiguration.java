@@ -0,0 +1,122 @@
+package com.deepmock;
+
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+
+/**
+ * Optional configuration of deep mock injection for a test class.  Applies however the injection is triggered
+ * (i.e. {@link SpringWithMockitoRunner}, {@link DeepMockTestExecutionListener}, {@link DeepMockRule} or
+ * {@link DeepMockHandler} directly).
+ * <pre>
+ *   &#64;RunWith(SpringWithMockitoRunner.class)
+ *   &#64;DeepMockConfiguration(verifyIntegrity = true)
+ *   public final class MyITest {
+ *   ...
+ * </pre>
+ */
+@Target({ TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface DeepMockConfiguration {
+
+    /**
+     * Fingerprint every field visited while injecting and, once the original fields have been restored, fail if any of
+     * them no longer holds the value it held before injection (i.e. the test mutated the shared object graph) or still
+     * holds a mock.  Use this to safely share a Spring context between tests instead of marking them DirtiesContext.
+     */
+    boolean verifyIntegrity() default false;
+
+    /**
+     * Whether to inject (and restore) around each test method or once for the whole test class.  Class scope avoids
+     * walking the object graph for every test method, only resetting the mocks in between.
+     * @see DeepMockClassRule
+     */
+    InjectionScope scope() default InjectionScope.METHOD;
+
+    /**
+     * Create the Mock and Spy instances once per test class and reset them between test methods (spies being given the
+     * new test instance's object as their delegate) rather than creating new ones for every test method.  Mocks are
+     * always pooled with {@link InjectionScope#CLASS}.
+     * @see MockPool
+     */
+    boolean poolMocks() default false;
+
+    /**
+     * How to handle proxies whose target is created or borrowed on demand (lazy-init, prototype, pooled or scoped
+     * targets).  By default such targets are injected only when they actually serve an invocation.
+     */
+    ProxyTargetPolicy proxyTargets() default ProxyTargetPolicy.ADVISE;
+
+    /**
+     * The order in which to walk the object graph.  Breadth first order reaches (and logs at debug level) each replaced
+     * field through its shortest path from the subject.
+     */
+    TraversalOrder traversalOrder() default TraversalOrder.DEPTH_FIRST;
+
+    /**
+     * Compute the field metadata of the beans of the Spring context on background threads before the first test of the
+     * class (with the {@link SpringWithMockitoRunner} or the {@link DeepMockTestExecutionListener}), rather than on the
+     * first injection.  To start as soon as the context is refreshed, declare it with the
+     * {@link MetadataPrewarmer.ContextInitializer}.
+     * @see MetadataPrewarmer
+     */
+    boolean prewarmMetadata() default false;
+
+    /**
+     * For subjects exercised by many threads at once (e.g. soak tests).  Restoring holds back new invocations of the
+     * injected mocks, waits (for up to {@link DeepMockHandler#QUIESCENCE_TIMEOUT_MILLIS}) until none is in progress,
+     * then puts the originals back before letting the held back invocations proceed.  Restoring fails the test if
+     * invocations were still in progress after the timeout.
+     * <p>
+     * Mocks are injected before the test starts its threads, and an invocation released after restoring happens after
+     * the fields were put back, so threads see the injected and restored values without the fields being volatile.
+     * An invocation released after restoring still goes to the mock if the subject had read the field before.
+     * @see com.deepmock.mockito.InFlightInvocations
+     */
+    boolean concurrent() default false;
+
+    /**
+     * Also walk the static fields of the classes of the objects walked (each class being scanned once), injecting mocks
+     * into static singletons and the like, when only Spring injectable fields are walked (the
+     * {@link SpringWithMockitoRunner} and {@link DeepMockTestExecutionListener}).  Otherwise (e.g. the
+     * {@link DeepMockRule}) static fields are walked with the other fields of each object whatever this setting.
+     * <p>
+     * Static fields are journalled once however many objects lead to them, and restored with the other fields.  Mocks
+     * are only injected into static final fields when this is set (otherwise injecting into one fails): they are
+     * written through <code>sun.misc.Unsafe</code> (see {@link com.deepmock.reflect.StaticFieldUtil}), but the JIT
+     * compiler treats them as constants, so code compiled before the mock was injected may keep using the original
+     * value, as does code reading a compile time constant.
+     */
+    boolean staticFields() default false;
+
+    /**
+     * Fail, before injecting anything, if a Mock or Spy of the test would not be injected anywhere in the object graph
+     * of the subject
+     * @see InjectionPlan
+     */
+    boolean strictMocks() default false;
+
+    /**
+     * Only create the Mocks that would be injected into the object graph of the subject, leaving the others null.  The
+     * subject must be available before the mocks are created (as it is with Spring injection).  Spies, which wrap an
+     * object the test has already built, are always created.  Does not apply to pooled mocks.
+     * <p>
+     * When the graph reaches a proxy whose target is created on demand and would be injected into (see
+     * {@link #proxyTargets()}), planning does not create the target to find out which mocks it needs: the mocks of the
+     * types found in the target class of the proxy are created.  All the mocks are created whenever they could not be
+     * created as <code>MockitoAnnotations.initMocks</code> would: if the test has <code>&#064;InjectMocks</code>
+     * fields, or if Mockito is configured with a custom annotation engine.
+     * @see InjectionPlan
+     */
+    boolean skipUnusedMocks() default false;
+
+    /**
+     * Whether to replace fields in the object graph (restoring them afterwards) or in copies of the objects on the path
+     * to each replaced field, leaving the object graph untouched
+     */
+    InjectionStrategy strategy() default InjectionStrategy.IN_PLACE;
+}
@@ -1,27 +1,43 @@
 package com.deepmock;
 
+import com.deepmock.TestClassModel.AnnotatedField;
+import com.deepmock.mockito.InFlightInvocations;
 import com.deepmock.reflect.ProxyHelper;
-import org.mockito.Mock;
-import org.mockito.Spy;
+import com.deepmock.reflect.StaticFieldUtil;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.target.SingletonTargetSource;
 import org.springframework.core.GenericCollectionTypeResolver;
-import org.springframework.util.ClassUtils;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.mockito.Mockito;
 import org.springframework.util.ReflectionUtils;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static com.deepmock.InjectionHelper.getInjectableFields;
-import static org.mockito.internal.util.reflection.Whitebox.getInternalState;
 import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
 
 /**
  * This class controls the deep injection of mocks/spies and the restoration of original state.  The mocks/spies will be injected
- * into the object graph of the {@link Subject} of the supplied test.
+ * into the object graph of each {@link Subject} of the supplied test.  When a test has several subjects their graphs
+ * are walked together, so collaborators shared between subjects are only visited once.
  *
  * It can be invoked in numerous ways from your test class:
  * <h2>Directly</h2>
@@ -58,93 +74,356 @@ import static org.mockito.internal.util.reflection.Whitebox.setInternalState;
  *   public DeepMockRule deepMockRule = new DeepMockRule();
  * </pre>
  *
+ * @see DeepMockConfiguration
  * @see DeepMockRule
  * @see SpringWithMockitoRunner
  * @see Subject
  */
 public final class DeepMockHandler {
+    /**
+     * How long restoring waits for in-flight invocations of the mocks in {@link DeepMockConfiguration#concurrent()} mode
+     */
+    public static final long QUIESCENCE_TIMEOUT_MILLIS = 30000;
+
+    private static final Log LOG = LogFactory.getLog(DeepMockHandler.class);
 
     private List<FieldAndValue> originalFields = new ArrayList<FieldAndValue>();
+    private List<AdvisedChange> advisedChanges = new ArrayList<AdvisedChange>();
+    private List<RecordingStore> recordingStores = new ArrayList<RecordingStore>();
     private Object testTarget;
+    private TestClassModel testClassModel;
+    private GraphFingerprint fingerprint;
+    private ProxyTargetPolicy proxyTargetPolicy = ProxyTargetPolicy.ADVISE;
+    private TraversalOrder traversalOrder = TraversalOrder.DEPTH_FIRST;
+    private Map<Type, Object> injectedMocks;
+    private boolean onlySpringFields;
+    private boolean concurrent;
+    private volatile InFlightInvocations inFlightInvocations;
+    private Set<Class<?>> staticFieldsScanned;
+    private boolean strictMocks;
+    private InjectionStrategy strategy = InjectionStrategy.IN_PLACE;
 
     public DeepMockHandler(Object testTarget) {
         this.testTarget = testTarget;
+        this.testClassModel = TestClassModel.forClass(testTarget.getClass());
+        DeepMockConfiguration configuration = AnnotationUtils.findAnnotation(testTarget.getClass(), DeepMockConfiguration.class);
+        if (configuration != null) {
+            if (configuration.verifyIntegrity()) {
+                fingerprint = new GraphFingerprint();
+            }
+            proxyTargetPolicy = configuration.proxyTargets();
+            traversalOrder = configuration.traversalOrder();
+            concurrent = configuration.concurrent();
+            strictMocks = configuration.strictMocks();
+            strategy = configuration.strategy();
+            if (configuration.staticFields()) {
+                staticFieldsScanned = new HashSet<Class<?>>();
+            }
+        }
     }
 
     /**
-     * Inject mocks into the object graph of the subject.
+     * Inject mocks into the object graphs of all the subjects.
      * @param onlySpringFields Only traverse down spring injectable paths i.e. @Resource, @Autowired, setter injection.
      * This is slightly faster but creates a dependency on Spring.
      */
-    public void injectMocksIntoObjectGraphOfSubject(boolean onlySpringFields) {
-        recurseObjectGraphInjectingMocks(findSubject(), findMocks(), new ArrayList<Class>(), onlySpringFields);
+    public synchronized void injectMocksIntoObjectGraphOfSubject(boolean onlySpringFields) {
+        this.onlySpringFields = onlySpringFields;
+        if (strictMocks) {
+            failIfUnused(planInjection(onlySpringFields));
+        }
+        injectedMocks = findMocks();
+        injectedMocks.putAll(createRecordingStandIns());
+        if (injectedMocks.isEmpty()) {
+            return;
+        }
+        if (concurrent) {
+            inFlightInvocations = new InFlightInvocations();
+            inFlightInvocations.track(injectedMocks.values());
+        }
+        if (strategy == InjectionStrategy.PATH_COPY) {
+            injectIntoPathCopies();
+            return;
+        }
+        GraphWalker walker = new GraphWalker(traversalOrder, onlySpringFields, staticFieldsScanned);
+        for (AnnotatedField subjectField : findSubjectFields()) {
+            walker.walk(subjectField.getValue(testTarget), subjectField.getField().getName(), new InjectingVisitor(injectedMocks));
+        }
     }
 
-    public void restoreOriginalFields() {
-        for (FieldAndValue field : originalFields) {
-            field.reset();
+    /**
+     * Inject the mocks into copies of the objects from which the replaced fields can be reached, and give the test the
+     * copied subjects
+     * @see InjectionStrategy#PATH_COPY
+     */
+    private void injectIntoPathCopies() {
+        final PathCopier copier = new PathCopier();
+        GraphWalker walker = new GraphWalker(traversalOrder, onlySpringFields);
+        GraphWalker.Visitor visitor = new GraphWalker.Visitor() {
+            @Override
+            public Object getProxyTarget(GraphNode proxy) {
+                return ProxyHelper.hasStaticTarget(proxy.getValue()) ? ProxyHelper.getProxyTarget(proxy.getValue()) : null;
+            }
+
+            @Override
+            public boolean visitField(GraphNode owner, Field field) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    return false; // shared by every instance, so cannot be replaced in a copy
+                }
+                for (Map.Entry<Type, Object> mock : injectedMocks.entrySet()) {
+                    if (isInjectable(field, mock.getKey())) {
+                        copier.setField(owner.getValue(), field, getInjectedValue(field, mock.getKey(), mock.getValue()));
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Injected mock into copy of " + owner.getPath(field));
+                        }
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+        List<AnnotatedField> subjectFields = findSubjectFields();
+        List<Object> subjects = new ArrayList<Object>();
+        for (AnnotatedField subjectField : subjectFields) {
+            subjects.add(subjectField.getValue(testTarget));
+            walker.walk(subjectField.getValue(testTarget), subjectField.getField().getName(), visitor);
+        }
+        copier.copyPaths(walker.getVisited(), subjects);
+        for (AnnotatedField subjectField : subjectFields) {
+            Object subject = subjectField.getValue(testTarget);
+            if (subject != null && copier.getCopy(subject) != subject) {
+                storeOriginalValue(testTarget, subjectField.getField());
+                subjectField.setValue(testTarget, copier.getCopy(subject));
+            }
         }
-        originalFields.clear();
     }
 
     /**
-     * Recurse the object graph injecting mocks into fields.  This method can also handle traversing through proxies, arrays and lists.
-     * Note that:
-     * <ul>
-     *     <li>a List can be replaced by a list of one mock</li>
-     *     <li>an array can be replaced by an array of one mock</li>
-     *     <li>An object inside a list or array can NOT be directly mocked (i.e. we cannot replace one indexed element in a list/array)</li>
-     * </ul>
+     * Work out where each Mock and Spy of the test would be injected, without changing the object graph.  The mocks do
+     * not need to have been created.
+     * @param onlySpringFields Only traverse down spring injectable paths
      */
-    private void recurseObjectGraphInjectingMocks(Object target, Map<Type, Object> mocks, List<Class> classStack,
-            boolean onlySpringFields) {
-        if (target == null || mocks.isEmpty()) {
-            return;
+    public synchronized InjectionPlan planInjection(final boolean onlySpringFields) {
+        // the same mock of each type as injection uses
+        final Map<Type, AnnotatedField> mocks = TestClassModel.getFieldsByType(testClassModel.getMockFields());
+        final InjectionPlan plan = new InjectionPlan(testClassModel.getMockFields());
+        GraphWalker walker = new GraphWalker(traversalOrder, onlySpringFields,
+                staticFieldsScanned != null ? new HashSet<Class<?>>() : null);
+        GraphWalker.Visitor planner = new GraphWalker.Visitor() {
+            @Override
+            public Object getProxyTarget(GraphNode proxy) {
+                if (ProxyHelper.hasStaticTarget(proxy.getValue())) {
+                    return ProxyHelper.getProxyTarget(proxy.getValue());
+                }
+                if (isTargetInjected(proxy.getValue())) {
+                    Class<?> targetClass = ProxyHelper.getAdvised(proxy.getValue()).getTargetSource().getTargetClass();
+                    plan.addUnwalkedProxy(proxy.getPath(), targetClass == null ? mocks.values()
+                            : findPossibleMocks(targetClass, mocks, onlySpringFields));
+                }
+                return null;
+            }
+
+            @Override
+            public boolean visitField(GraphNode owner, Field field) {
+                for (Map.Entry<Type, AnnotatedField> mock : mocks.entrySet()) {
+                    if (isInjectable(field, mock.getKey())) {
+                        plan.add(mock.getValue(), owner.getPath(field));
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+        for (AnnotatedField subjectField : findSubjectFields()) {
+            walker.walk(subjectField.getValue(testTarget), subjectField.getField().getName(), planner);
         }
-        if (ProxyHelper.isProxy(target)) {
-            Object o = ProxyHelper.getProxyTarget(target);
-            recurseObjectGraphInjectingMocks(o, mocks, classStack, onlySpringFields);
-            return;
+        return plan;
+    }
+
+    /**
+     * @return The mocks that may be injected into an object of the given class, going by the declared types of its
+     * fields (and of their fields) as the object itself is not available
+     */
+    private List<AnnotatedField> findPossibleMocks(Class<?> targetClass, Map<Type, AnnotatedField> mocks, boolean onlySpringFields) {
+        List<AnnotatedField> possible = new ArrayList<AnnotatedField>();
+        Set<Class<?>> scanned = new HashSet<Class<?>>();
+        List<Class<?>> work = new ArrayList<Class<?>>();
+        work.add(targetClass);
+        while (!work.isEmpty() && possible.size() < mocks.size()) {
+            Class<?> clazz = work.remove(work.size() - 1);
+            if (!scanned.add(clazz)) {
+                continue;
+            }
+            List<Field> fields = new ArrayList<Field>(onlySpringFields ? FieldCache.getInjectableFields(clazz) : FieldCache.getAllFields(clazz));
+            if (staticFieldsScanned != null && onlySpringFields) {
+                for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                    fields.addAll(FieldCache.getStaticFields(c));
+                }
+            }
+            for (Field field : fields) {
+                boolean injectable = false;
+                for (Map.Entry<Type, AnnotatedField> mock : mocks.entrySet()) {
+                    if (isInjectable(field, mock.getKey())) {
+                        injectable = true;
+                        if (!possible.contains(mock.getValue())) {
+                            possible.add(mock.getValue());
+                        }
+                        break;
+                    }
+                }
+                Class<?> fieldType = field.getType().isArray() ? field.getType().getComponentType() : field.getType();
+                if (!injectable && !fieldType.isPrimitive()) {
+                    work.add(fieldType);
+                }
+            }
         }
-        if (classStack.contains(target.getClass())) {
-            return; // prevent endless loop when class contains an instance of itself
+        return possible;
+    }
+
+    private void failIfUnused(InjectionPlan plan) {
+        List<AnnotatedField> unused = plan.getUnusedMockFields();
+        if (!unused.isEmpty()) {
+            throw new AssertionError("Mocks not injected anywhere in the object graph of the subject: " + unused);
         }
-        if (target.getClass().isArray() && !target.getClass().getComponentType().isPrimitive()) {
-            Object[] arr = ((Object[])target);
-            for (Object o : arr) {
-                recurseObjectGraphInjectingMocks(o, mocks, new ArrayList<Class>(classStack), onlySpringFields);
+    }
+
+    /**
+     * Restore the fields that were replaced by mocks to their original values.  If integrity verification is configured
+     * (see {@link DeepMockConfiguration#verifyIntegrity()}), every field visited during injection is then checked.
+     * In {@link DeepMockConfiguration#concurrent()} mode, new invocations of the mocks are held back until the fields
+     * are restored, and in-flight ones are first waited for.
+     * @throws AssertionError if integrity verification is enabled and the object graph was not restored, or if
+     * invocations of the mocks were still in progress when the fields had to be restored
+     */
+    public void restoreOriginalFields() {
+        restoreOriginalFields(null);
+    }
+
+    /**
+     * Restore the fields that were replaced by mocks after a test has run (see {@link #restoreOriginalFields()}).
+     * @param testFailure The failure of the test itself, or null if it passed.  A failure to restore cleanly is added to
+     * it as a suppressed exception rather than masking it
+     * @throws AssertionError if the original fields were not restored cleanly and the test passed
+     */
+    public void restoreOriginalFields(Throwable testFailure) {
+        InFlightInvocations invocations = inFlightInvocations;
+        try {
+            // wait outside the lock, an in-flight invocation may need it to inject into a lazily created proxy target
+            AssertionError failure = closeGate(invocations);
+            synchronized (this) {
+                try {
+                    restore();
+                } catch (AssertionError e) {
+                    if (failure != null) {
+                        e.addSuppressed(failure);
+                    }
+                    failure = e;
+                }
             }
-            return;
+            if (failure != null) {
+                if (testFailure == null || testFailure == failure) {
+                    throw failure;
+                }
+                testFailure.addSuppressed(failure);
+            }
+        } finally {
+            if (invocations != null) {
+                invocations.open();
+            }
+        }
+    }
+
+    /**
+     * Hold back new invocations of the mocks and wait for the in-flight ones
+     * @return The failure to report once the fields are restored regardless, if invocations are still in flight
+     */
+    private AssertionError closeGate(InFlightInvocations invocations) {
+        if (invocations == null) {
+            return null;
         }
-        if (Collection.class.isAssignableFrom(target.getClass())) {
-            Collection col = ((Collection)target);
-            for (Object o : col) {
-                recurseObjectGraphInjectingMocks(o, mocks, new ArrayList<Class>(classStack), onlySpringFields);
+        try {
+            if (invocations.close(QUIESCENCE_TIMEOUT_MILLIS)) {
+                return null;
             }
-            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        classStack.add(target.getClass());
-        List<Field> injectableFields = onlySpringFields ? getInjectableFields(target) : getAllFields(target);
-        for (Field field : injectableFields) {
-            boolean fieldInjected = injectWithMockIfAvailable(target, field, mocks);
-            if (!fieldInjected) {
-                Object fieldValue = getInternalState(target, field.getName());
-                recurseObjectGraphInjectingMocks(fieldValue, mocks, new ArrayList<Class>(classStack), onlySpringFields);
+        return new AssertionError(invocations.getInFlight() + " invocations of mocks were still in progress when their"
+                + " original fields were restored (waited up to " + QUIESCENCE_TIMEOUT_MILLIS + "ms)");
+    }
+
+    private void restore() {
+        for (AdvisedChange advisedChange : advisedChanges) {
+            advisedChange.removeAdvice();
+        }
+        for (FieldAndValue field : originalFields) {
+            field.reset();
+        }
+        originalFields.clear();
+        if (inFlightInvocations != null) {
+            inFlightInvocations.untrack();
+            inFlightInvocations = null;
+        }
+        for (AdvisedChange advisedChange : advisedChanges) {
+            try {
+                advisedChange.restoreTargetSource();
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to restore target source of proxy", e);
             }
         }
+        advisedChanges.clear();
+        flushRecordings();
+        if (fingerprint != null && injectedMocks != null) {
+            fingerprint.verify(injectedMocks.values());
+        }
     }
 
-    public List<Field> getAllFields(Object target) {
-        final List<Field> fields = new ArrayList<Field>();
-        ReflectionUtils.doWithFields(target.getClass(), new ReflectionUtils.FieldCallback() {
-            @Override
-            public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
-                if (!ClassUtils.isPrimitiveOrWrapper(field.getType()) && !ClassUtils.isPrimitiveArray(field.getType()) && !field.getType().getName().startsWith("java.lang")) {
-                    fields.add(field);
+    /**
+     * @return true if injecting would, now or on a later invocation, inject into the non static target of the proxy
+     */
+    private boolean isTargetInjected(Object proxy) {
+        return proxyTargetPolicy != ProxyTargetPolicy.SKIP;
+    }
+
+    /**
+     * Get the target of a proxy to traverse into.  A proxy with a non static target is handled according to the
+     * configured {@link ProxyTargetPolicy} so that no target is created or borrowed just to inject into it.  A frozen
+     * proxy cannot be advised, so under {@link ProxyTargetPolicy#ADVISE} its target source is replaced instead.
+     * @return the target, or null if there is nothing to traverse into now
+     */
+    private Object getTraversableProxyTarget(GraphNode node) {
+        Object proxy = node.getValue();
+        if (ProxyHelper.hasStaticTarget(proxy)) {
+            return ProxyHelper.getProxyTarget(proxy);
+        }
+        Advised advised = ProxyHelper.getAdvised(proxy);
+        ProxyTargetPolicy policy = proxyTargetPolicy;
+        if (policy == ProxyTargetPolicy.ADVISE && advised.isFrozen()) {
+            LOG.warn("Proxy at " + node.getPath() + " is frozen so can not be advised, replacing its target source to"
+                    + " inject into its target");
+            policy = ProxyTargetPolicy.REPLACE_TARGET_SOURCE;
+        }
+        switch (policy) {
+            case ADVISE:
+                LateInjectionInterceptor interceptor = new LateInjectionInterceptor();
+                advised.addAdvice(0, interceptor);
+                advisedChanges.add(AdvisedChange.adviceAdded(advised, interceptor));
+                return null;
+            case REPLACE_TARGET_SOURCE:
+                TargetSource targetSource = advised.getTargetSource();
+                Object target = ProxyHelper.getProxyTarget(proxy);
+                if (target != null) {
+                    advised.setTargetSource(new SingletonTargetSource(target));
+                    advisedChanges.add(AdvisedChange.targetSourceReplaced(advised, targetSource, target));
                 }
-            }
-        });
-        return fields;
+                return target;
+            default:
+                return null;
+        }
+    }
+
+    public List<Field> getAllFields(Object target) {
+        return FieldCache.getAllFields(target.getClass());
     }
 
     /**
@@ -163,27 +442,39 @@ public final class DeepMockHandler {
             return true;
         }
         for (Map.Entry<Type, Object> mock : mocks.entrySet()) {
-            if (field.getGenericType().equals(mock.getKey())) {
-                storeOriginalValue(target, field);
-                replaceFieldWithMock(target, field, mock.getValue());
-                return true;
-            } else if (field.getType().isArray() && mock.getKey().equals(field.getType().getComponentType())) {
+            if (isInjectable(field, mock.getKey())) {
+                checkWritable(field);
                 storeOriginalValue(target, field);
-                Object arr = Array.newInstance((Class)mock.getKey(), 1);
-                Array.set(arr, 0, mock.getValue());
-                replaceFieldWithMock(target, field, arr);
-                return true;
-            } else if (List.class == field.getType() && mock.getKey().equals(GenericCollectionTypeResolver.getCollectionFieldType(field))) {
-                storeOriginalValue(target, field);
-                List lst = new ArrayList();
-                lst.add(mock.getValue());
-                replaceFieldWithMock(target, field, lst);
+                replaceFieldWithMock(target, field, getInjectedValue(field, mock.getKey(), mock.getValue()));
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * @return true if a mock of the given type can replace the field
+     * @see #injectWithMockIfAvailable(Object, Field, Map)
+     */
+    private static boolean isInjectable(Field field, Type mockType) {
+        return field.getGenericType().equals(mockType)
+                || (field.getType().isArray() && mockType.equals(field.getType().getComponentType()))
+                || (List.class == field.getType() && mockType.equals(GenericCollectionTypeResolver.getCollectionFieldType(field)));
+    }
+
+    private static Object getInjectedValue(Field field, Type mockType, Object mock) {
+        if (field.getGenericType().equals(mockType)) {
+            return mock;
+        } else if (field.getType().isArray()) {
+            Object arr = Array.newInstance((Class)mockType, 1);
+            Array.set(arr, 0, mock);
+            return arr;
+        }
+        List lst = new ArrayList();
+        lst.add(mock);
+        return lst;
+    }
+
     private boolean alreadyReplaced(Object target, Field field) {
         for (FieldAndValue replacedField : originalFields) {
             if (replacedField.sameField(target, field)) {
@@ -193,23 +484,98 @@ public final class DeepMockHandler {
         return false;
     }
 
-    private Object findSubject() {
-        Map<Type, Object> subjects = findSubjects();
-        if (subjects.size() == 1) {
-            return subjects.values().iterator().next();
+    private List<AnnotatedField> findSubjectFields() {
+        if (testClassModel.getSubjectFields().isEmpty()) {
+            throw new IllegalArgumentException("Must annotate at least one field with " + Subject.class.getName());
         }
-        throw new IllegalArgumentException("Must annotate a single field with " + Subject.class.getName());
+        return testClassModel.getSubjectFields();
     }
 
-    private Map<Type, Object> findSubjects() {
-        return AnnotationHelper.findAnnotatedFields(testTarget, Subject.class);
+    private Map<Type, Object> findMocks() {
+        return TestClassModel.getValuesByType(testTarget, testClassModel.getMockFields());
     }
 
-    private Map<Type, Object> findMocks() {
-        Map<Type, Object> mockFields = AnnotationHelper.findAnnotatedFields(testTarget, Mock.class);
-        Map<Type, Object> spyFields = AnnotationHelper.findAnnotatedFields(testTarget, Spy.class);
-        mockFields.putAll(spyFields);
-        return mockFields;
+    /**
+     * Replace the collaborators of the {@link Record} and {@link Replay} fields' types found in the object graph by
+     * stand-ins recording or replaying their invocations
+     * @return The stand-ins by type
+     */
+    private Map<Type, Object> createRecordingStandIns() {
+        Map<Type, Object> standIns = new HashMap<Type, Object>();
+        for (AnnotatedField field : testClassModel.getAnnotatedFields(Record.class)) {
+            Record record = field.getField().getAnnotation(Record.class);
+            RecordingStore store = new RecordingStore(getRecordingFile(field, record.file()), false, 0);
+            standIns.put(field.getGenericType(), createRecordingStandIn(field, store, false));
+        }
+        for (AnnotatedField field : testClassModel.getAnnotatedFields(Replay.class)) {
+            Replay replay = field.getField().getAnnotation(Replay.class);
+            RecordingStore store = new RecordingStore(getRecordingFile(field, replay.file()), true, replay.maxCachedResults());
+            standIns.put(field.getGenericType(), createRecordingStandIn(field, store, true));
+        }
+        return standIns;
+    }
+
+    private Object createRecordingStandIn(AnnotatedField field, RecordingStore store, boolean replay) {
+        Object collaborator = findCollaborator(field.getGenericType());
+        if (collaborator == null) {
+            throw new IllegalArgumentException("No collaborator of type " + field.getGenericType()
+                    + " found in the object graph of the subject to record or replay for " + field);
+        }
+        recordingStores.add(store);
+        Class<?> type = ResolvableType.forType(field.getGenericType()).resolve();
+        Object standIn = Mockito.mock(type, Mockito.withSettings().defaultAnswer(new RecordingAnswer(collaborator, store, replay)));
+        field.setValue(testTarget, standIn);
+        return standIn;
+    }
+
+    private File getRecordingFile(AnnotatedField field, String file) {
+        if (file.length() > 0) {
+            return new File(file);
+        }
+        return new File("target/deepmock-recordings", testTarget.getClass().getName() + "." + field.getField().getName() + ".rec");
+    }
+
+    /**
+     * @return The first value found in the object graph of the subjects held by a field of the given type
+     */
+    private Object findCollaborator(final Type type) {
+        final Object[] found = new Object[1];
+        GraphWalker walker = new GraphWalker(traversalOrder, onlySpringFields,
+                staticFieldsScanned != null ? new HashSet<Class<?>>() : null);
+        GraphWalker.Visitor finder = new GraphWalker.Visitor() {
+            @Override
+            public Object getProxyTarget(GraphNode proxy) {
+                return ProxyHelper.hasStaticTarget(proxy.getValue()) ? ProxyHelper.getProxyTarget(proxy.getValue()) : null;
+            }
+
+            @Override
+            public boolean visitField(GraphNode owner, Field field) {
+                if (found[0] != null) {
+                    return false;
+                }
+                if (field.getGenericType().equals(type)) {
+                    found[0] = ReflectionUtils.getField(field, owner.getValue());
+                    return false;
+                }
+                return true;
+            }
+        };
+        for (AnnotatedField subjectField : findSubjectFields()) {
+            walker.walk(subjectField.getValue(testTarget), subjectField.getField().getName(), finder);
+        }
+        return found[0];
+    }
+
+    private void flushRecordings() {
+        for (RecordingStore store : recordingStores) {
+            try {
+                store.flush();
+                store.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write recording", e);
+            }
+        }
+        recordingStores.clear();
     }
 
     private void storeOriginalValue(Object target, Field field) {
@@ -218,8 +584,104 @@ public final class DeepMockHandler {
         originalFields.add(new FieldAndValue(target, field, fieldValue));
     }
 
+    /**
+     * A static final field is only written (through <code>sun.misc.Unsafe</code>) when static fields are opted into
+     * @see DeepMockConfiguration#staticFields()
+     */
+    private void checkWritable(Field field) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && staticFieldsScanned == null) {
+            throw new RuntimeException("Unable to inject a mock into static final field " + field
+                    + ", use @DeepMockConfiguration(staticFields = true) to allow it");
+        }
+    }
+
     private void replaceFieldWithMock(Object target, Field field, Object mockValue) {
-        setInternalState(target, field.getName(), mockValue);
+        if (Modifier.isStatic(field.getModifiers())) {
+            StaticFieldUtil.setStatic(field, mockValue);
+        } else {
+            setInternalState(target, field.getName(), mockValue);
+        }
+    }
+
+    /**
+     * Walks the object graph injecting mocks into fields.  Proxies, arrays and collections are traversed into.
+     * Note that:
+     * <ul>
+     *     <li>a List can be replaced by a list of one mock</li>
+     *     <li>an array can be replaced by an array of one mock</li>
+     *     <li>An object inside a list or array can NOT be directly mocked (i.e. we cannot replace one indexed element in a list/array)</li>
+     * </ul>
+     */
+    private class InjectingVisitor implements GraphWalker.Visitor {
+        private final Map<Type, Object> mocks;
+
+        private InjectingVisitor(Map<Type, Object> mocks) {
+            this.mocks = mocks;
+        }
+
+        @Override
+        public Object getProxyTarget(GraphNode proxy) {
+            return getTraversableProxyTarget(proxy);
+        }
+
+        @Override
+        public boolean visitField(GraphNode owner, Field field) {
+            Object target = owner.getValue();
+            if (fingerprint != null && !alreadyReplaced(target, field)) {
+                fingerprint.record(target, field, ReflectionUtils.getField(field, target));
+            }
+            boolean fieldInjected = injectWithMockIfAvailable(target, field, mocks);
+            if (fieldInjected && LOG.isDebugEnabled()) {
+                LOG.debug("Injected mock into " + owner.getPath(field));
+            }
+            return !fieldInjected;
+        }
     }
 
+    /**
+     * Injects mocks into the target serving each invocation of a proxy with a non static target.  Only walking a new
+     * target takes the handler's lock, invocations served by a target that has been injected into do not.
+     * @see ProxyTargetPolicy#ADVISE
+     */
+    private class LateInjectionInterceptor implements MethodInterceptor {
+        private final GraphWalker walker = new GraphWalker(traversalOrder, onlySpringFields, staticFieldsScanned);
+        private final Set<IdentityKey> injectedTargets = Collections.newSetFromMap(new ConcurrentHashMap<IdentityKey, Boolean>());
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object target = invocation.getThis();
+            if (target != null && !injectedTargets.contains(new IdentityKey(target))) {
+                synchronized (DeepMockHandler.this) {
+                    if (injectedMocks != null && !walker.isVisited(target)) {
+                        walker.walk(target, target.getClass().getSimpleName(), new InjectingVisitor(injectedMocks));
+                    }
+                    // only once injected into, so that other threads do not use the target before
+                    injectedTargets.add(new IdentityKey(target));
+                }
+            }
+            return invocation.proceed();
+        }
+    }
+
+    /**
+     * Compares the object it wraps by identity, for use as a key of a concurrent map
+     */
+    private static final class IdentityKey {
+        private final Object object;
+
+        private IdentityKey(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IdentityKey && ((IdentityKey) other).object == object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+    }
 }
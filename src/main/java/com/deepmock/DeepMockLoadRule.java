@@ -0,0 +1,246 @@
+package com.deepmock;
+
+import com.deepmock.utils.LatencyHistogram;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.rules.MethodRule;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Deeply injects mocks into the {@link Subject} exactly like {@link DeepMockRule}, and drives an operation on the
+ * subject from many threads to measure its throughput and latency with its collaborators mocked out.
+ * <pre>
+ *   &#64;Rule
+ *   public DeepMockLoadRule loadRule = new DeepMockLoadRule().threads(16).warmUp(2, SECONDS).duration(10, SECONDS)
+ *           .maxP99(5, MILLISECONDS).minThroughput(10000);
+ *
+ *   &#64;Test
+ *   public void handlesLoad() throws Exception {
+ *       when(daoMock.find(anyLong())).thenAnswer(withLatency(logNormal(1, 10, MILLISECONDS)));
+ *       loadRule.drive(new DeepMockLoadRule.Operation() {
+ *           public void run() throws Exception {
+ *               subject.process(42L);
+ *           }
+ *       });
+ *   }
+ * </pre>
+ * {@link #drive(Operation)} fails the test if an operation throws or a configured threshold is missed.  As the subject
+ * is shared by all the driving threads consider {@link DeepMockConfiguration#concurrent()}.  The driving threads are
+ * platform threads, as virtual threads are not available on the Java versions this library supports.
+ */
+public final class DeepMockLoadRule implements MethodRule {
+    private static final Log LOG = LogFactory.getLog(DeepMockLoadRule.class);
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long warmUpNanos;
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+    private long operations;
+    private long maxP50Nanos = Long.MAX_VALUE;
+    private long maxP99Nanos = Long.MAX_VALUE;
+    private long maxP999Nanos = Long.MAX_VALUE;
+    private double minThroughput;
+
+    /**
+     * An operation on the subject, invoked concurrently
+     */
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    public DeepMockLoadRule threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Must drive the subject from at least one thread");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Run the operation for this long before measuring, e.g. for the JIT to compile the subject
+     */
+    public DeepMockLoadRule warmUp(long warmUp, TimeUnit unit) {
+        this.warmUpNanos = unit.toNanos(warmUp);
+        return this;
+    }
+
+    /**
+     * Measure for this long (the default is 10 seconds)
+     */
+    public DeepMockLoadRule duration(long duration, TimeUnit unit) {
+        this.durationNanos = unit.toNanos(duration);
+        this.operations = 0;
+        return this;
+    }
+
+    /**
+     * Measure this many operations (shared between the threads) instead of for a duration
+     */
+    public DeepMockLoadRule operations(long operations) {
+        if (operations < 1) {
+            throw new IllegalArgumentException("Must measure at least one operation");
+        }
+        this.operations = operations;
+        return this;
+    }
+
+    public DeepMockLoadRule maxP50(long latency, TimeUnit unit) {
+        this.maxP50Nanos = unit.toNanos(latency);
+        return this;
+    }
+
+    public DeepMockLoadRule maxP99(long latency, TimeUnit unit) {
+        this.maxP99Nanos = unit.toNanos(latency);
+        return this;
+    }
+
+    public DeepMockLoadRule maxP999(long latency, TimeUnit unit) {
+        this.maxP999Nanos = unit.toNanos(latency);
+        return this;
+    }
+
+    /**
+     * @param minThroughput The minimum measured operations per second
+     */
+    public DeepMockLoadRule minThroughput(double minThroughput) {
+        this.minThroughput = minThroughput;
+        return this;
+    }
+
+    @Override
+    public Statement apply(Statement base, FrameworkMethod method, Object target) {
+        return new DeepMockStatement(base, method, target);
+    }
+
+    /**
+     * Drive the operation from the configured number of threads, then check the thresholds
+     * @throws AssertionError if an operation failed or a threshold was missed
+     */
+    public LoadReport drive(final Operation operation) throws InterruptedException {
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> firstError = new AtomicReference<Throwable>();
+        final List<Driver> drivers = new ArrayList<Driver>(threads);
+        for (int i = 0; i < threads; i++) {
+            long quota = operations / threads + (i < operations % threads ? 1 : 0);
+            Driver driver = new Driver(operation, operations > 0, quota, ready, start, firstError);
+            drivers.add(driver);
+            Thread thread = new Thread(driver, "deepmock-load-" + i);
+            thread.setDaemon(true);
+            driver.thread = thread;
+            thread.start();
+        }
+        ready.await();
+        long startNanos = System.nanoTime();
+        long measureFrom = startNanos + warmUpNanos;
+        for (Driver driver : drivers) {
+            driver.measureFrom = measureFrom;
+            driver.measureUntil = measureFrom + durationNanos;
+        }
+        start.countDown();
+        LatencyHistogram histogram = new LatencyHistogram();
+        long errors = 0;
+        for (Driver driver : drivers) {
+            driver.thread.join();
+            histogram.add(driver.histogram);
+            errors += driver.errors;
+        }
+        LoadReport report = new LoadReport(histogram, errors, Math.max(0, System.nanoTime() - measureFrom));
+        LOG.info(report);
+        checkThresholds(report, firstError.get());
+        return report;
+    }
+
+    private void checkThresholds(LoadReport report, Throwable firstError) {
+        List<String> breaches = new ArrayList<String>();
+        if (report.getErrors() > 0) {
+            breaches.add(report.getErrors() + " operations failed");
+        }
+        checkLatency("p50", report.getP50(), maxP50Nanos, breaches);
+        checkLatency("p99", report.getP99(), maxP99Nanos, breaches);
+        checkLatency("p99.9", report.getP999(), maxP999Nanos, breaches);
+        if (report.getThroughput() < minThroughput) {
+            breaches.add(String.format("throughput %.1f ops/s below %.1f ops/s", report.getThroughput(), minThroughput));
+        }
+        if (!breaches.isEmpty()) {
+            AssertionError error = new AssertionError("Load thresholds missed: " + breaches + "\n" + report);
+            if (firstError != null) {
+                error.initCause(firstError);
+            }
+            throw error;
+        }
+    }
+
+    private static void checkLatency(String percentile, long latency, long max, List<String> breaches) {
+        if (latency > max) {
+            breaches.add(String.format("%s %.3fms above %.3fms", percentile, latency / 1e6, max / 1e6));
+        }
+    }
+
+    private static final class Driver implements Runnable {
+        private final Operation operation;
+        private final long quota;
+        private final CountDownLatch ready;
+        private final CountDownLatch start;
+        private final AtomicReference<Throwable> firstError;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private Thread thread;
+        private final boolean countOperations;
+        // published to the driving thread by the start latch
+        private long measureFrom;
+        private long measureUntil;
+        private long errors;
+
+        private Driver(Operation operation, boolean countOperations, long quota, CountDownLatch ready, CountDownLatch start, AtomicReference<Throwable> firstError) {
+            this.operation = operation;
+            this.countOperations = countOperations;
+            this.quota = quota;
+            this.ready = ready;
+            this.start = start;
+            this.firstError = firstError;
+        }
+
+        @Override
+        public void run() {
+            ready.countDown();
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            while (System.nanoTime() < measureFrom) {
+                invoke(false);
+            }
+            if (countOperations) {
+                for (long i = 0; i < quota; i++) {
+                    invoke(true);
+                }
+            } else {
+                while (System.nanoTime() < measureUntil) {
+                    invoke(true);
+                }
+            }
+        }
+
+        private void invoke(boolean measure) {
+            long begin = System.nanoTime();
+            try {
+                operation.run();
+            } catch (Throwable e) {
+                if (measure) {
+                    errors++;
+                    firstError.compareAndSet(null, e);
+                }
+            }
+            if (measure) {
+                histogram.recordValue(System.nanoTime() - begin);
+            }
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.deepmock;
 
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.Statement;
-import org.mockito.MockitoAnnotations;
 
 public final class DeepMockStatement extends Statement {
     private Statement base;
@@ -16,13 +15,17 @@ public final class DeepMockStatement extends Statement {
     @Override
     public void evaluate() throws Throwable {
         // create annotated Mockito mocks
-        MockitoAnnotations.initMocks(target);
+        MockPool.createMocks(target);
         DeepMockHandler deepMockHandler = new DeepMockHandler(target);
         deepMockHandler.injectMocksIntoObjectGraphOfSubject(false);
+        Throwable failure = null;
         try {
             base.evaluate();
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
         } finally {
-            deepMockHandler.restoreOriginalFields();
+            deepMockHandler.restoreOriginalFields(failure);
         }
     }
 
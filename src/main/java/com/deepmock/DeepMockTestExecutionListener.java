@@ -1,23 +1,50 @@
 package com.deepmock;
 
 import org.springframework.test.context.TestContext;
+import org.springframework.test.context.TestExecutionListener;
 import org.springframework.test.context.support.AbstractTestExecutionListener;
 
-import static org.mockito.MockitoAnnotations.initMocks;
-
 public class DeepMockTestExecutionListener extends AbstractTestExecutionListener {
+    private final TestExecutionListener prewarmer = MetadataPrewarmer.testExecutionListener();
     private DeepMockHandler deepMockHandler;
+    private ClassScopedInjection classScopedInjection;
+
+    @Override
+    public void beforeTestClass(TestContext testContext) throws Exception {
+        if (ClassScopedInjection.isClassScoped(testContext.getTestClass())) {
+            classScopedInjection = new ClassScopedInjection(true);
+        }
+        prewarmer.beforeTestClass(testContext);
+    }
 
     @Override
     public void beforeTestMethod(TestContext testContext) throws Exception {
-        initMocks(testContext.getTestInstance());
+        if (classScopedInjection != null) {
+            classScopedInjection.beforeTestMethod(testContext.getTestInstance());
+            return;
+        }
+        MockPool.createMocks(testContext.getTestInstance());
         deepMockHandler = new DeepMockHandler(testContext.getTestInstance());
         deepMockHandler.injectMocksIntoObjectGraphOfSubject(true);
     }
 
     @Override
     public void afterTestMethod(TestContext testContext) throws Exception {
-        deepMockHandler.restoreOriginalFields();
+        if (deepMockHandler != null) {
+            try {
+                deepMockHandler.restoreOriginalFields(testContext.getTestException());
+            } finally {
+                deepMockHandler = null;
+            }
+        }
+    }
+
+    @Override
+    public void afterTestClass(TestContext testContext) throws Exception {
+        if (classScopedInjection != null) {
+            classScopedInjection.afterTestClass();
+            classScopedInjection = null;
+        }
     }
 
 }
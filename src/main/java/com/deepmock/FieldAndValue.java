@@ -1,8 +1,10 @@
 package com.deepmock;
 
+import com.deepmock.reflect.StaticFieldUtil;
 import org.mockito.internal.util.reflection.Whitebox;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 
 public class FieldAndValue {
     private Object target;
@@ -16,10 +18,42 @@ public class FieldAndValue {
     }
 
     public void reset() {
-        Whitebox.setInternalState(target, field.getName(), origValue);
+        if (isStatic()) {
+            StaticFieldUtil.setStatic(field, origValue);
+        } else {
+            Whitebox.setInternalState(target, field.getName(), origValue);
+        }
     }
 
+    /**
+     * @param target The owner of the field, ignored for a static field which is the same field whatever the object it
+     * was reached from
+     */
     public boolean sameField(Object target, Field field) {
-        return target == this.target && field.equals(this.field);
+        return field.equals(this.field) && (target == this.target || isStatic());
+    }
+
+    public Object getCurrentValue() {
+        return isStatic() ? StaticFieldUtil.getStatic(field) : Whitebox.getInternalState(target, field.getName());
+    }
+
+    private boolean isStatic() {
+        return Modifier.isStatic(field.getModifiers());
+    }
+
+    /**
+     * @return true if the field still holds the same instance as the original value
+     */
+    public boolean isUnchanged() {
+        return getCurrentValue() == origValue;
+    }
+
+    @Override
+    public String toString() {
+        if (isStatic()) {
+            return "static " + field.getDeclaringClass().getName() + "." + field.getName();
+        }
+        return field.getDeclaringClass().getName() + "." + field.getName() + " of " + target.getClass().getName() + "@"
+                + Integer.toHexString(System.identityHashCode(target));
     }
 }
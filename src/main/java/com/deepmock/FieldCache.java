@@ -0,0 +1,120 @@
+package com.deepmock;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches, per class, the (accessible) fields that are walked when injecting mocks into an object graph.  The field
+ * lists can also be cached on disk between test JVMs, see {@link PersistentMetadataCache}.
+ */
+public final class FieldCache {
+    private static final String ALL = "all";
+    private static final String INJECTABLE = "injectable";
+    private static final String STATIC = "static";
+    private static final ConcurrentMap<Class<?>, List<Field>> ALL_FIELDS = new ConcurrentHashMap<Class<?>, List<Field>>();
+    private static final ConcurrentMap<Class<?>, List<Field>> INJECTABLE_FIELDS = new ConcurrentHashMap<Class<?>, List<Field>>();
+    private static final ConcurrentMap<Class<?>, List<Field>> STATIC_FIELDS = new ConcurrentHashMap<Class<?>, List<Field>>();
+    private static final PersistentMetadataCache PERSISTENT_CACHE = PersistentMetadataCache.fromSystemProperty();
+
+    /**
+     * @return All fields (declared or inherited, static or not) of the class that may hold a collaborator, i.e. excluding
+     * primitives, primitive arrays, and java.lang types
+     */
+    public static List<Field> getAllFields(Class<?> clazz) {
+        List<Field> fields = ALL_FIELDS.get(clazz);
+        if (fields == null) {
+            List<Field> found = loadPersisted(clazz, ALL);
+            if (found == null) {
+                found = persist(clazz, ALL, findAllFields(clazz));
+            }
+            fields = cache(ALL_FIELDS, clazz, found);
+        }
+        return fields;
+    }
+
+    /**
+     * @return The fields of the class Spring may inject into
+     * @see InjectionHelper#getInjectableFields(Class)
+     */
+    public static List<Field> getInjectableFields(Class<?> clazz) {
+        List<Field> fields = INJECTABLE_FIELDS.get(clazz);
+        if (fields == null) {
+            List<Field> found = loadPersisted(clazz, INJECTABLE);
+            if (found == null) {
+                found = persist(clazz, INJECTABLE, InjectionHelper.getInjectableFields(clazz));
+            }
+            fields = cache(INJECTABLE_FIELDS, clazz, found);
+        }
+        return fields;
+    }
+
+    /**
+     * @return The static fields declared by the class (not its superclasses) that may hold a collaborator
+     */
+    public static List<Field> getStaticFields(Class<?> clazz) {
+        List<Field> fields = STATIC_FIELDS.get(clazz);
+        if (fields == null) {
+            List<Field> found = loadPersisted(clazz, STATIC);
+            if (found == null) {
+                found = persist(clazz, STATIC, findStaticFields(clazz));
+            }
+            fields = cache(STATIC_FIELDS, clazz, found);
+        }
+        return fields;
+    }
+
+    private static List<Field> loadPersisted(Class<?> clazz, String kind) {
+        return PERSISTENT_CACHE != null ? PERSISTENT_CACHE.getFields(clazz, kind) : null;
+    }
+
+    private static List<Field> persist(Class<?> clazz, String kind, List<Field> fields) {
+        if (PERSISTENT_CACHE != null) {
+            PERSISTENT_CACHE.putFields(clazz, kind, fields);
+        }
+        return fields;
+    }
+
+    private static List<Field> cache(ConcurrentMap<Class<?>, List<Field>> cache, Class<?> clazz, List<Field> fields) {
+        for (Field field : fields) {
+            ReflectionUtils.makeAccessible(field);
+        }
+        List<Field> unmodifiable = Collections.unmodifiableList(fields);
+        List<Field> existing = cache.putIfAbsent(clazz, unmodifiable);
+        return existing != null ? existing : unmodifiable;
+    }
+
+    private static List<Field> findAllFields(Class<?> clazz) {
+        final List<Field> fields = new ArrayList<Field>();
+        ReflectionUtils.doWithFields(clazz, new ReflectionUtils.FieldCallback() {
+            @Override
+            public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
+                if (mayHoldCollaborator(field)) {
+                    fields.add(field);
+                }
+            }
+        });
+        return fields;
+    }
+
+    private static List<Field> findStaticFields(Class<?> clazz) {
+        List<Field> fields = new ArrayList<Field>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && !field.isSynthetic() && mayHoldCollaborator(field)) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static boolean mayHoldCollaborator(Field field) {
+        return !ClassUtils.isPrimitiveOrWrapper(field.getType()) && !ClassUtils.isPrimitiveArray(field.getType()) && !field.getType().getName().startsWith("java.lang");
+    }
+}
@@ -0,0 +1,56 @@
+package com.deepmock;
+
+import org.mockito.internal.util.MockUtil;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Identity fingerprint of the fields visited while injecting mocks into an object graph.  Once the original fields have
+ * been restored, the fingerprint can be checked to ensure that each field holds the very same object it held before
+ * injection.
+ */
+final class GraphFingerprint {
+    private final List<FieldAndValue> slots = new ArrayList<FieldAndValue>();
+
+    void record(Object target, Field field, Object value) {
+        slots.add(new FieldAndValue(target, field, value));
+    }
+
+    /**
+     * @param mocks The mocks that were injected
+     * @throws AssertionError if any recorded field has been changed, naming the fields left holding a mock.  A field that
+     * held a mock before injection (e.g. a bean created by a {@link com.deepmock.mockito.MockitoFactoryBean}) and still
+     * holds that same mock is not a problem
+     */
+    void verify(Collection<Object> mocks) {
+        Set<Object> mockSet = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        mockSet.addAll(mocks);
+        MockUtil mockUtil = new MockUtil();
+        StringBuilder problems = new StringBuilder();
+        for (FieldAndValue slot : slots) {
+            if (slot.isUnchanged()) {
+                continue;
+            }
+            Object currentValue = slot.getCurrentValue();
+            if (mockSet.contains(currentValue) || mockUtil.isMock(currentValue)) {
+                problems.append("\n  still holds a mock: ").append(slot);
+            } else {
+                problems.append("\n  modified by test: ").append(slot);
+            }
+        }
+        slots.clear();
+        if (problems.length() > 0) {
+            throw new AssertionError("Object graph was not restored to its original state:" + problems);
+        }
+    }
+
+    void clear() {
+        slots.clear();
+    }
+}
@@ -0,0 +1,114 @@
+package com.deepmock;
+
+import java.lang.reflect.Field;
+
+/**
+ * An object reached while walking the object graph of a {@link Subject}, along with how it was reached.  Nodes link to
+ * their parent rather than copying the path, so the path is only built when it is asked for.
+ */
+final class GraphNode {
+    private final Object value;
+    private final GraphNode parent;
+    private final String name;
+    private final Field field;
+    private final int index;
+
+    static GraphNode root(Object value, String name) {
+        return new GraphNode(value, null, name, null, -1);
+    }
+
+    /**
+     * The owner of the static fields of a class, which has no value
+     */
+    static GraphNode staticOwner(Class<?> clazz) {
+        return new GraphNode(null, null, clazz.getName(), null, -1);
+    }
+
+    static GraphNode field(GraphNode parent, Field field, Object value) {
+        return new GraphNode(value, parent, null, field, -1);
+    }
+
+    static GraphNode element(GraphNode parent, int index, Object value) {
+        return new GraphNode(value, parent, null, null, index);
+    }
+
+    static GraphNode proxyTarget(GraphNode parent, Object value) {
+        return new GraphNode(value, parent, null, null, -1);
+    }
+
+    private GraphNode(Object value, GraphNode parent, String name, Field field, int index) {
+        this.value = value;
+        this.parent = parent;
+        this.name = name;
+        this.field = field;
+        this.index = index;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
+    GraphNode getParent() {
+        return parent;
+    }
+
+    /**
+     * @return The field of the parent holding this node's value, or null if this is a root, an element of an array or
+     * collection, or the target of a proxy
+     */
+    Field getField() {
+        return field;
+    }
+
+    /**
+     * @return The index of this node's value in the parent array or collection, or -1
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The path from the subject to this node e.g. <code>subject.service[target].dao.items[2]</code>
+     */
+    String getPath() {
+        StringBuilder path = new StringBuilder();
+        appendPath(path);
+        return path.toString();
+    }
+
+    /**
+     * @return The path from the subject to the given field of this node
+     */
+    String getPath(Field childField) {
+        StringBuilder path = new StringBuilder();
+        appendPath(path);
+        return path.append('.').append(childField.getName()).toString();
+    }
+
+    private void appendPath(StringBuilder path) {
+        GraphNode[] nodes = new GraphNode[getDepth()];
+        int i = nodes.length;
+        for (GraphNode node = this; node != null; node = node.parent) {
+            nodes[--i] = node;
+        }
+        for (GraphNode node : nodes) {
+            if (node.name != null) {
+                path.append(node.name);
+            } else if (node.field != null) {
+                path.append('.').append(node.field.getName());
+            } else if (node.index >= 0) {
+                path.append('[').append(node.index).append(']');
+            } else {
+                path.append("[target]");
+            }
+        }
+    }
+
+    private int getDepth() {
+        int depth = 0;
+        for (GraphNode node = this; node != null; node = node.parent) {
+            depth++;
+        }
+        return depth;
+    }
+}
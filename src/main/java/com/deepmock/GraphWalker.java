@@ -0,0 +1,156 @@
+package com.deepmock;
+
+import com.deepmock.reflect.ProxyHelper;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Walks object graphs without recursion, using an explicit work deque, so that arbitrarily deep graphs (e.g. long
+ * chains of handlers or linked lists) can be walked without exhausting the stack.  Proxies, arrays, collections and
+ * maps (their keys and values, numbered in iteration order, rather than their fields) are traversed into.  Every
+ * object is visited at most once per walker, however many paths (or roots) lead to it.
+ *
+ * The walker is reusable: walking several roots with the same walker shares the set of visited objects.
+ */
+final class GraphWalker {
+
+    /**
+     * Callback deciding what happens at proxies and fields during the walk
+     */
+    interface Visitor {
+        /**
+         * @return The target of the proxy to walk into, or null to go no further
+         */
+        Object getProxyTarget(GraphNode proxy);
+
+        /**
+         * Called for each (non primitive) field of each object walked, and each static field of its classes if static
+         * fields are walked (in which case the owner is a node with a null value)
+         * @return true to walk into the value held by the field
+         */
+        boolean visitField(GraphNode owner, Field field);
+    }
+
+    private final ArrayDeque<GraphNode> work = new ArrayDeque<GraphNode>();
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    private final TraversalOrder order;
+    private final boolean onlySpringFields;
+    private final Set<Class<?>> staticFieldsScanned;
+
+    GraphWalker(TraversalOrder order, boolean onlySpringFields) {
+        this(order, onlySpringFields, null);
+    }
+
+    /**
+     * @param staticFieldsScanned The classes whose static fields have already been walked, possibly shared between
+     * walkers so that each class is only scanned once, or null not to walk static fields
+     */
+    GraphWalker(TraversalOrder order, boolean onlySpringFields, Set<Class<?>> staticFieldsScanned) {
+        this.order = order;
+        this.onlySpringFields = onlySpringFields;
+        this.staticFieldsScanned = staticFieldsScanned;
+    }
+
+    void walk(Object root, String rootName, Visitor visitor) {
+        push(GraphNode.root(root, rootName));
+        try {
+            while (!work.isEmpty()) {
+                GraphNode node = order == TraversalOrder.BREADTH_FIRST ? work.pollFirst() : work.pollLast();
+                expand(node, visitor);
+            }
+        } finally {
+            work.clear();
+        }
+    }
+
+    /**
+     * @return true if the object has been walked by this walker
+     */
+    boolean isVisited(Object object) {
+        return visited.contains(object);
+    }
+
+    /**
+     * @return The objects walked by this walker
+     */
+    Set<Object> getVisited() {
+        return Collections.unmodifiableSet(visited);
+    }
+
+    private void expand(GraphNode node, Visitor visitor) {
+        Object target = node.getValue();
+        if (!visited.add(target)) {
+            return; // already walked from another path or another root
+        }
+        if (ProxyHelper.isProxy(target)) {
+            push(GraphNode.proxyTarget(node, visitor.getProxyTarget(node)));
+            return;
+        }
+        Class<?> targetClass = target.getClass();
+        if (targetClass.isArray()) {
+            if (!targetClass.getComponentType().isPrimitive()) {
+                Object[] arr = (Object[])target;
+                for (int i = 0; i < arr.length; i++) {
+                    push(GraphNode.element(node, i, arr[i]));
+                }
+            }
+            return;
+        }
+        if (target instanceof Collection) {
+            int i = 0;
+            for (Object element : (Collection<?>)target) {
+                push(GraphNode.element(node, i++, element));
+            }
+            return;
+        }
+        if (target instanceof Map) {
+            // the keys and values, as copied when injecting into copies of the graph, rather than the internals
+            int i = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)target).entrySet()) {
+                push(GraphNode.element(node, i++, entry.getKey()));
+                push(GraphNode.element(node, i++, entry.getValue()));
+            }
+            return;
+        }
+        if (staticFieldsScanned != null && onlySpringFields) {
+            // all fields, which are otherwise walked, include the static ones
+            expandStaticFields(targetClass, visitor);
+        }
+        List<Field> fields = onlySpringFields ? FieldCache.getInjectableFields(targetClass) : FieldCache.getAllFields(targetClass);
+        for (int i = 0, size = fields.size(); i < size; i++) {
+            Field field = fields.get(i);
+            if (visitor.visitField(node, field)) {
+                push(GraphNode.field(node, field, ReflectionUtils.getField(field, target)));
+            }
+        }
+    }
+
+    private void expandStaticFields(Class<?> targetClass, Visitor visitor) {
+        for (Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            if (!staticFieldsScanned.add(clazz)) {
+                return; // superclasses have been scanned too
+            }
+            GraphNode owner = GraphNode.staticOwner(clazz);
+            for (Field field : FieldCache.getStaticFields(clazz)) {
+                if (visitor.visitField(owner, field)) {
+                    push(GraphNode.field(owner, field, ReflectionUtils.getField(field, null)));
+                }
+            }
+        }
+    }
+
+    private void push(GraphNode node) {
+        Object value = node.getValue();
+        if (value != null && !visited.contains(value)) {
+            work.addLast(node);
+        }
+    }
+}
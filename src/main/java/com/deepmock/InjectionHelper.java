@@ -18,9 +18,13 @@ public class InjectionHelper {
     private static Log LOG = LogFactory.getLog(InjectionHelper.class);
 
     public static List<Field> getInjectableFields(Object target) {
+        return getInjectableFields(target.getClass());
+    }
+
+    public static List<Field> getInjectableFields(Class<?> targetClass) {
         List<Field> injectableFields = new ArrayList<Field>();
-        injectableFields.addAll(getAutowiredFields(target));
-        injectableFields.addAll(getFieldsForSetters(target));
+        injectableFields.addAll(getAutowiredFields(targetClass));
+        injectableFields.addAll(getFieldsForSetters(targetClass));
         return injectableFields;
     }
 
@@ -34,9 +38,9 @@ public class InjectionHelper {
         }
     }
 
-    private static List<Field> getAutowiredFields(Object target) {
+    private static List<Field> getAutowiredFields(Class<?> targetClass) {
         final List<Field> fields = new ArrayList<Field>();
-        ReflectionUtils.doWithFields(target.getClass(), new ReflectionUtils.FieldCallback() {
+        ReflectionUtils.doWithFields(targetClass, new ReflectionUtils.FieldCallback() {
             @Override
             public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
                 if (field.isAnnotationPresent(Resource.class) || field.isAnnotationPresent(Autowired.class)) {
@@ -47,19 +51,19 @@ public class InjectionHelper {
         return fields;
     }
 
-    private static List<Field> getFieldsForSetters(Object target) {
+    private static List<Field> getFieldsForSetters(Class<?> targetClass) {
         List<Field> fields = new ArrayList<Field>();
-        PropertyDescriptor[] descriptors = BeanUtils.getPropertyDescriptors(target.getClass());
+        PropertyDescriptor[] descriptors = BeanUtils.getPropertyDescriptors(targetClass);
         for (PropertyDescriptor descriptor : descriptors) {
-            addDescriptorField(target, descriptor, fields);
+            addDescriptorField(targetClass, descriptor, fields);
         }
         return fields;
     }
 
-    private static void addDescriptorField(Object target, PropertyDescriptor descriptor, List<Field> fields) {
+    private static void addDescriptorField(Class<?> targetClass, PropertyDescriptor descriptor, List<Field> fields) {
         Method writeMethod = descriptor.getWriteMethod();
         if (writeMethod != null) {
-            Field field = getField(target, descriptor);
+            Field field = getField(targetClass, descriptor);
             if (field != null) {
                 fields.add(field);
             } else {
@@ -68,20 +72,20 @@ public class InjectionHelper {
         }
     }
 
-    private static Field getField(Object target, PropertyDescriptor descriptor) {
+    private static Field getField(Class<?> targetClass, PropertyDescriptor descriptor) {
         Class<?> fieldType = descriptor.getPropertyType();
         // If you have strange field naming conventions, you can add your field name to the possibleFieldNames
         String[] possibleFieldNames = new String[] {descriptor.getName()};
-        Field field = getFieldByNameAndType(target, fieldType, possibleFieldNames);
+        Field field = getFieldByNameAndType(targetClass, fieldType, possibleFieldNames);
         if (field == null) {
-            field = ReflectionUtils.findField(target.getClass(), null, fieldType);
+            field = ReflectionUtils.findField(targetClass, null, fieldType);
         }
         return field;
     }
 
-    private static Field getFieldByNameAndType(Object target, Class<?> fieldType, String... possibleFieldNames) {
+    private static Field getFieldByNameAndType(Class<?> targetClass, Class<?> fieldType, String... possibleFieldNames) {
         for (String fieldName : possibleFieldNames) {
-            Field field = ReflectionUtils.findField(target.getClass(), fieldName, fieldType);
+            Field field = ReflectionUtils.findField(targetClass, fieldName, fieldType);
             if (field != null) {
                 return field;
             }
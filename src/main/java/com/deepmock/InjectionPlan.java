@@ -0,0 +1,114 @@
+package com.deepmock;
+
+import com.deepmock.TestClassModel.AnnotatedField;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where each mock (or spy) of a test would be injected: the paths, from the {@link Subject}, of the fields it would
+ * replace.  Computed without changing the object graph by {@link DeepMockHandler#planInjection(boolean)}.
+ *
+ * The targets of proxies that are created or borrowed on demand are not walked when planning, as that would create or
+ * borrow them.  When injection would walk into them (see {@link ProxyTargetPolicy}), those proxies are recorded as
+ * unwalked, with the mocks that may be injected into their targets going by the target class of the proxy: a field of
+ * the mock's type in that class, or in the declared types of its fields.  Such a mock is reported as possibly used
+ * rather than unused.  When the target class of a proxy is not known, every mock may be injected into its target.
+ */
+public final class InjectionPlan {
+    private final Map<AnnotatedField, List<String>> paths = new LinkedHashMap<AnnotatedField, List<String>>();
+    private final Map<AnnotatedField, List<String>> possibleProxyPaths = new LinkedHashMap<AnnotatedField, List<String>>();
+    private final List<String> unwalkedProxyPaths = new ArrayList<String>();
+
+    InjectionPlan(List<AnnotatedField> mockFields) {
+        for (AnnotatedField mockField : mockFields) {
+            paths.put(mockField, new ArrayList<String>());
+            possibleProxyPaths.put(mockField, new ArrayList<String>());
+        }
+    }
+
+    void add(AnnotatedField mockField, String path) {
+        paths.get(mockField).add(path);
+    }
+
+    void addUnwalkedProxy(String path, Collection<AnnotatedField> possibleMockFields) {
+        unwalkedProxyPaths.add(path);
+        for (AnnotatedField mockField : possibleMockFields) {
+            possibleProxyPaths.get(mockField).add(path);
+        }
+    }
+
+    /**
+     * @return The paths of the fields the mock held by the named test field would replace
+     */
+    public List<String> getInjectionPaths(String mockFieldName) {
+        for (Map.Entry<AnnotatedField, List<String>> entry : paths.entrySet()) {
+            if (entry.getKey().getField().getName().equals(mockFieldName)) {
+                return Collections.unmodifiableList(entry.getValue());
+            }
+        }
+        throw new IllegalArgumentException("No Mock or Spy field named " + mockFieldName);
+    }
+
+    /**
+     * @return true if the mock would be injected into a field that was planned
+     */
+    public boolean isUsed(AnnotatedField mockField) {
+        List<String> mockPaths = paths.get(mockField);
+        return mockPaths != null && !mockPaths.isEmpty();
+    }
+
+    /**
+     * @return true if the mock would be injected into a field that was planned, or may be injected into the target of
+     * a proxy that was not walked
+     */
+    public boolean mayBeUsed(AnnotatedField mockField) {
+        List<String> proxyPaths = possibleProxyPaths.get(mockField);
+        return isUsed(mockField) || (proxyPaths != null && !proxyPaths.isEmpty());
+    }
+
+    /**
+     * @return The paths of the proxies whose targets were not walked, but would be walked when injecting
+     */
+    public List<String> getUnwalkedProxyPaths() {
+        return Collections.unmodifiableList(unwalkedProxyPaths);
+    }
+
+    /**
+     * @return The mock and spy fields whose values would not be injected anywhere, not even possibly
+     * @see #mayBeUsed(AnnotatedField)
+     */
+    public List<AnnotatedField> getUnusedMockFields() {
+        List<AnnotatedField> unused = new ArrayList<AnnotatedField>();
+        for (AnnotatedField mockField : paths.keySet()) {
+            if (!mayBeUsed(mockField)) {
+                unused.add(mockField);
+            }
+        }
+        return unused;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder plan = new StringBuilder("Injection plan:");
+        for (Map.Entry<AnnotatedField, List<String>> entry : paths.entrySet()) {
+            plan.append("\n  ").append(entry.getKey().getField().getName()).append(" -> ");
+            List<String> proxyPaths = possibleProxyPaths.get(entry.getKey());
+            if (!entry.getValue().isEmpty()) {
+                plan.append(entry.getValue());
+            } else if (!proxyPaths.isEmpty()) {
+                plan.append("(possibly into the targets of ").append(proxyPaths).append(")");
+            } else {
+                plan.append("(unused)");
+            }
+        }
+        if (!unwalkedProxyPaths.isEmpty()) {
+            plan.append("\n  targets of proxies not walked: ").append(unwalkedProxyPaths);
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package com.deepmock;
+
+/**
+ * How long mocks stay injected into the object graph of the {@link Subject}.
+ * @see DeepMockConfiguration#scope()
+ */
+public enum InjectionScope {
+    /**
+     * Mocks are created and injected before each test method and the object graph restored after it
+     */
+    METHOD,
+
+    /**
+     * Mocks are created and injected before the first test method of the class and the object graph restored after the
+     * last one.  The same mock instances are given to each test instance and reset between test methods.  This
+     * requires the object graph of the subject to be shared between test instances (e.g. Spring singletons).
+     */
+    CLASS
+}
@@ -0,0 +1,23 @@
+package com.deepmock;
+
+/**
+ * How mocks are put into the object graph of the {@link Subject}.
+ * @see DeepMockConfiguration#strategy()
+ */
+public enum InjectionStrategy {
+    /**
+     * Replace the fields of the objects in the graph, and put the original values back on restore
+     */
+    IN_PLACE,
+
+    /**
+     * Leave the graph untouched: shallow copy only the objects from which a replaced field can be reached (by any path,
+     * so a bean shared by several others is copied once and seen with the mock through all of them), put the mock into
+     * the copy and give the test the copied subject.  Everything else is shared with the original graph, and restoring
+     * only gives the test back the original subject.  Proxies are copied as new proxies with the same advice, and
+     * collections and maps with their clone method or a copy constructor (a type with neither is refused, except the
+     * unmodifiable and synchronized views of the JDK, which are copied as the same kind of view of a copy of their
+     * contents); the targets of proxies that are created or borrowed on demand, and static fields, are not walked.
+     */
+    PATH_COPY
+}
@@ -0,0 +1,65 @@
+package com.deepmock;
+
+import com.deepmock.utils.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of driving a subject with {@link DeepMockLoadRule}.  Latencies are in nanoseconds.
+ */
+public final class LoadReport {
+    private final LatencyHistogram histogram;
+    private final long errors;
+    private final long elapsedNanos;
+
+    LoadReport(LatencyHistogram histogram, long errors, long elapsedNanos) {
+        this.histogram = histogram;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return The number of measured operations (excluding warm-up), including those that failed
+     */
+    public long getOperations() {
+        return histogram.getTotalCount();
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return Measured operations per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getOperations() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public long getP50() {
+        return histogram.getValueAtPercentile(50);
+    }
+
+    public long getP99() {
+        return histogram.getValueAtPercentile(99);
+    }
+
+    public long getP999() {
+        return histogram.getValueAtPercentile(99.9);
+    }
+
+    public long getMax() {
+        return histogram.getMaxValue();
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d operations (%d errors) in %.3fs: %.1f ops/s, p50 %.3fms, p99 %.3fms, p99.9 %.3fms, max %.3fms",
+                getOperations(), errors, elapsedNanos / 1e9, getThroughput(), getP50() / 1e6, getP99() / 1e6,
+                getP999() / 1e6, getMax() / 1e6);
+    }
+}
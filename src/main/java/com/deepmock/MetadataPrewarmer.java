@@ -0,0 +1,141 @@
+package com.deepmock;
+
+import com.deepmock.reflect.ProxyHelper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.test.context.TestContext;
+import org.springframework.test.context.TestExecutionListener;
+import org.springframework.test.context.support.AbstractTestExecutionListener;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fills the metadata caches used when injecting mocks ({@link FieldCache}, {@link TestClassModel} and the proxy lookups
+ * of {@link ProxyHelper}) for the beans of an application context on background threads, so that the first injection
+ * into each test does not pay the cost of computing them.  Each context is only warmed once.
+ *
+ * Warming starts when the context has been refreshed for contexts declared with the {@link ContextInitializer}, and
+ * otherwise when a test class configured to prewarm is about to run (which loads its context if need be), before any
+ * of its tests is instantiated.
+ * @see DeepMockConfiguration#prewarmMetadata()
+ */
+public final class MetadataPrewarmer {
+    private static final Log LOG = LogFactory.getLog(MetadataPrewarmer.class);
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "deepmock-metadata-prewarmer");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+    private static final Set<ApplicationContext> WARMED_CONTEXTS = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<ApplicationContext, Boolean>()));
+
+    private final Set<Class<?>> warmedClasses = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+    private final boolean onlySpringFields;
+
+    /**
+     * Start warming the metadata of the (already instantiated) singleton beans of the context and of the test class.
+     * Returns immediately.
+     */
+    public static void prewarm(ApplicationContext applicationContext, Class<?> testClass, boolean onlySpringFields) {
+        TestClassModel.forClass(testClass);
+        if (applicationContext instanceof ConfigurableApplicationContext && WARMED_CONTEXTS.add(applicationContext)) {
+            new MetadataPrewarmer(onlySpringFields).prewarmBeans(((ConfigurableApplicationContext)applicationContext).getBeanFactory());
+        }
+    }
+
+    /**
+     * @return A listener starting to warm the context of test classes configured to prewarm, before their first test
+     */
+    static TestExecutionListener testExecutionListener() {
+        return new AbstractTestExecutionListener() {
+            @Override
+            public void beforeTestClass(TestContext testContext) throws Exception {
+                DeepMockConfiguration configuration = AnnotationUtils.findAnnotation(testContext.getTestClass(), DeepMockConfiguration.class);
+                if (configuration != null && configuration.prewarmMetadata()) {
+                    prewarm(testContext.getApplicationContext(), testContext.getTestClass(), true);
+                }
+            }
+        };
+    }
+
+    private MetadataPrewarmer(boolean onlySpringFields) {
+        this.onlySpringFields = onlySpringFields;
+    }
+
+    private void prewarmBeans(ConfigurableListableBeanFactory beanFactory) {
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            if (beanFactory.containsSingleton(beanName)) {
+                final Object bean = beanFactory.getSingleton(beanName);
+                EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            prewarmBean(bean);
+                        } catch (RuntimeException e) {
+                            LOG.debug("Unable to prewarm metadata for " + bean.getClass(), e);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private void prewarmBean(Object bean) {
+        Object target = bean;
+        while (target != null && ProxyHelper.isProxy(target) && ProxyHelper.hasStaticTarget(target)) {
+            target = ProxyHelper.getProxyTarget(target);
+        }
+        if (target != null) {
+            prewarmClass(target.getClass());
+        }
+    }
+
+    private void prewarmClass(Class<?> clazz) {
+        if (clazz.isPrimitive() || clazz.isArray() || !warmedClasses.add(clazz)) {
+            return;
+        }
+        for (Field field : onlySpringFields ? FieldCache.getInjectableFields(clazz) : FieldCache.getAllFields(clazz)) {
+            prewarmClass(field.getType());
+        }
+    }
+
+    /**
+     * Starts warming the metadata of the Spring injectable fields of the beans of a context as soon as it has been
+     * refreshed:
+     * <pre>
+     * &#064;ContextConfiguration(locations = "/applicationContext.xml", initializers = MetadataPrewarmer.ContextInitializer.class)
+     * </pre>
+     */
+    public static final class ContextInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+        @Override
+        public void initialize(final ConfigurableApplicationContext applicationContext) {
+            applicationContext.addApplicationListener(new ApplicationListener<ContextRefreshedEvent>() {
+                @Override
+                public void onApplicationEvent(ContextRefreshedEvent event) {
+                    if (event.getApplicationContext() == applicationContext && WARMED_CONTEXTS.add(applicationContext)) {
+                        new MetadataPrewarmer(true).prewarmBeans(applicationContext.getBeanFactory());
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.deepmock;
+
+import com.deepmock.TestClassModel.AnnotatedField;
+import com.deepmock.mockito.MockReset;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.mockito.configuration.AnnotationEngine;
+import org.mockito.configuration.DefaultMockitoConfiguration;
+import org.mockito.configuration.IMockitoConfiguration;
+import org.mockito.internal.configuration.SpyAnnotationEngine;
+import org.mockito.internal.util.MockUtil;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of the {@link org.mockito.Mock} and {@link Spy} instances of a test class.  The mocks are created for the first
+ * test instance and handed to every later test instance after being reset, so their identity does not change between
+ * test methods.  A spy is given the freshly constructed object of the later test instance as its new delegate.
+ *
+ * Pooled mocks are shared between the test methods of a class, so those test methods must not run in parallel.
+ * @see DeepMockConfiguration#poolMocks()
+ */
+public final class MockPool {
+    private static final ConcurrentMap<Class<?>, MockPool> POOLS = new ConcurrentHashMap<Class<?>, MockPool>();
+
+    private final TestClassModel testClassModel;
+    private Object[] mocks;
+
+    /**
+     * Create the mocks of the test instance: taken from the pool of its class if mocks are pooled (see
+     * {@link DeepMockConfiguration#poolMocks()}), only those that would be injected if unused mocks are skipped (see
+     * {@link DeepMockConfiguration#skipUnusedMocks()}), otherwise created by Mockito.
+     */
+    public static void createMocks(Object testInstance) {
+        DeepMockConfiguration configuration = AnnotationUtils.findAnnotation(testInstance.getClass(), DeepMockConfiguration.class);
+        if (configuration != null && configuration.poolMocks()) {
+            forClass(testInstance.getClass()).populate(testInstance);
+        } else if (configuration != null && configuration.skipUnusedMocks()) {
+            createPlannedMocks(testInstance);
+        } else {
+            MockitoAnnotations.initMocks(testInstance);
+        }
+    }
+
+    /**
+     * Create the mocks the injection plan of the test instance may use, and the spies, with Mockito's annotation engine.
+     * Falls back to creating them all with Mockito when that is not enough to do what Mockito would.
+     */
+    private static void createPlannedMocks(Object testInstance) {
+        TestClassModel testClassModel = TestClassModel.forClass(testInstance.getClass());
+        AnnotationEngine engine = new DefaultMockitoConfiguration().getAnnotationEngine();
+        AnnotationEngine configuredEngine = getConfiguredAnnotationEngine();
+        if (!testClassModel.getAnnotatedFields(InjectMocks.class).isEmpty()
+                || (configuredEngine != null && configuredEngine.getClass() != engine.getClass())) {
+            // the objects to inject mocks into may need mocks the subject does not, a custom engine may do anything
+            MockitoAnnotations.initMocks(testInstance);
+            return;
+        }
+        InjectionPlan plan = new DeepMockHandler(testInstance).planInjection(false);
+        Set<Field> skipped = new HashSet<Field>();
+        for (AnnotatedField field : testClassModel.getAnnotatedFields(Mock.class)) {
+            if (!plan.mayBeUsed(field)) {
+                skipped.add(field.getField());
+            }
+        }
+        for (Class<?> clazz = testInstance.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!skipped.contains(field)) {
+                    createMockFor(engine, testInstance, field);
+                }
+            }
+            // spies are not created by createMockFor but by processing the class
+            new SpyAnnotationEngine().process(clazz, testInstance);
+        }
+    }
+
+    /**
+     * Set the field to the mock (or captor) the annotation engine creates for its first annotation it handles, as
+     * Mockito does for a custom engine
+     */
+    @SuppressWarnings("deprecation")
+    private static void createMockFor(AnnotationEngine engine, Object testInstance, Field field) {
+        for (Annotation annotation : field.getAnnotations()) {
+            Object mock = engine.createMockFor(annotation, field);
+            if (mock != null) {
+                ReflectionUtils.makeAccessible(field);
+                ReflectionUtils.setField(field, testInstance, mock);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The annotation engine of the <code>org.mockito.configuration.MockitoConfiguration</code> class on the
+     * classpath, or null if there is none
+     * @see IMockitoConfiguration
+     */
+    private static AnnotationEngine getConfiguredAnnotationEngine() {
+        try {
+            Class<?> configuration = Class.forName("org.mockito.configuration.MockitoConfiguration");
+            return ((IMockitoConfiguration) configuration.getConstructor().newInstance()).getAnnotationEngine();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to load the Mockito configuration", e);
+        }
+    }
+
+    /**
+     * @return The pool shared by all instances of the test class
+     */
+    public static MockPool forClass(Class<?> testClass) {
+        MockPool pool = POOLS.get(testClass);
+        if (pool == null) {
+            pool = new MockPool(testClass);
+            MockPool existing = POOLS.putIfAbsent(testClass, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+        }
+        return pool;
+    }
+
+    public MockPool(Class<?> testClass) {
+        this.testClassModel = TestClassModel.forClass(testClass);
+    }
+
+    /**
+     * Set the pooled mocks on the test instance, creating them if this is the first instance and resetting them
+     * otherwise
+     */
+    public synchronized void populate(Object testInstance) {
+        List<AnnotatedField> mockFields = testClassModel.getMockFields();
+        if (mocks == null) {
+            MockitoAnnotations.initMocks(testInstance);
+            mocks = TestClassModel.getValues(testInstance, mockFields).toArray();
+            return;
+        }
+        MockUtil mockUtil = new MockUtil();
+        for (int i = 0; i < mocks.length; i++) {
+            AnnotatedField field = mockFields.get(i);
+            Object mock = mocks[i];
+            if (mockUtil.isMock(mock)) {
+                Object delegate = field.getField().isAnnotationPresent(Spy.class) ? field.getValue(testInstance) : null;
+                if (delegate != null && !mockUtil.isMock(delegate)) {
+                    MockReset.resetSpy(mock, delegate);
+                } else {
+                    MockReset.reset(mock);
+                }
+            }
+            field.setValue(testInstance, mock);
+        }
+        createCaptors(testClassModel, testInstance);
+    }
+
+    private static void createCaptors(TestClassModel testClassModel, Object testInstance) {
+        for (AnnotatedField field : testClassModel.getAnnotatedFields(Captor.class)) {
+            Class<?> capturedType = ResolvableType.forType(field.getGenericType()).getGeneric(0).resolve(Object.class);
+            field.setValue(testInstance, ArgumentCaptor.forClass(capturedType));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.deepmock;
+
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Makes shallow copies of the instances of a class, without calling a constructor.  Copiers are cached per class.
+ */
+final class ObjectCopier {
+    private static final Objenesis OBJENESIS = new ObjenesisStd(true);
+    private static final ConcurrentMap<Class<?>, ObjectCopier> COPIERS = new ConcurrentHashMap<Class<?>, ObjectCopier>();
+
+    private final Class<?> clazz;
+    private final Field[] fields;
+    private final Field[] referenceFields;
+
+    static ObjectCopier forClass(Class<?> clazz) {
+        ObjectCopier copier = COPIERS.get(clazz);
+        if (copier == null) {
+            copier = new ObjectCopier(clazz);
+            ObjectCopier existing = COPIERS.putIfAbsent(clazz, copier);
+            if (existing != null) {
+                copier = existing;
+            }
+        }
+        return copier;
+    }
+
+    private ObjectCopier(Class<?> clazz) {
+        this.clazz = clazz;
+        final List<Field> all = new ArrayList<Field>();
+        final List<Field> references = new ArrayList<Field>();
+        ReflectionUtils.doWithFields(clazz, new ReflectionUtils.FieldCallback() {
+            @Override
+            public void doWith(Field field) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    ReflectionUtils.makeAccessible(field);
+                    all.add(field);
+                    if (!field.getType().isPrimitive()) {
+                        references.add(field);
+                    }
+                }
+            }
+        });
+        this.fields = all.toArray(new Field[all.size()]);
+        this.referenceFields = references.toArray(new Field[references.size()]);
+    }
+
+    Object copy(Object original) {
+        Object copy = OBJENESIS.newInstance(clazz);
+        for (Field field : fields) {
+            ReflectionUtils.setField(field, copy, ReflectionUtils.getField(field, original));
+        }
+        return copy;
+    }
+
+    /**
+     * @return The fields of the class that hold references
+     */
+    Field[] getReferenceFields() {
+        return referenceFields;
+    }
+}
@@ -0,0 +1,420 @@
+package com.deepmock;
+
+import com.deepmock.reflect.ProxyHelper;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyConfig;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.target.SingletonTargetSource;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Puts values into copies of the objects of a graph rather than the objects themselves (see
+ * {@link InjectionStrategy#PATH_COPY}).
+ *
+ * Every object of the walked graph from which a replaced field can be reached is copied, whichever path (or how many
+ * paths) lead to it, and the references between copied objects are pointed at the copies.  So an object shared by
+ * several beans is seen with the mocks through all of them.  References are followed through every (non static) field
+ * of the objects walked, the elements of arrays and collections, the keys and values of maps and the static targets
+ * of proxies (as {@link GraphWalker} walks them); the internals of collections and maps are never copied, the
+ * collections and maps are copied as a whole.
+ */
+final class PathCopier {
+    private final Map<Object, Map<Field, Object>> replacements = new IdentityHashMap<Object, Map<Field, Object>>();
+    private final Map<Object, Object> copies = new IdentityHashMap<Object, Object>();
+    /** The modifiable collections or maps wrapped by the copies of unmodifiable or synchronized views, by copy */
+    private final Map<Object, Object> viewContents = new IdentityHashMap<Object, Object>();
+
+    /**
+     * Set the field of the copy of the owner once the objects are copied
+     */
+    void setField(Object owner, Field field, Object value) {
+        Map<Field, Object> fields = replacements.get(owner);
+        if (fields == null) {
+            fields = new LinkedHashMap<Field, Object>();
+            replacements.put(owner, fields);
+        }
+        fields.put(field, value);
+    }
+
+    /**
+     * Copy the objects from which a replaced field can be reached, link the copies together and set the replaced
+     * fields in them
+     * @param walked The objects walked from the roots
+     * @param roots The roots of the graph
+     */
+    void copyPaths(Set<Object> walked, Collection<Object> roots) {
+        Set<Object> leadingToReplaced = findObjectsLeadingTo(replacements.keySet(), walked);
+        // only copy what is reachable from the roots, not e.g. the internals of a map leading to one of its values
+        ArrayDeque<Object> work = new ArrayDeque<Object>();
+        for (Object root : roots) {
+            if (root != null && leadingToReplaced.contains(root) && !copies.containsKey(root)) {
+                copies.put(root, copy(root));
+                work.add(root);
+            }
+        }
+        while (!work.isEmpty()) {
+            for (Object child : getReferences(work.poll())) {
+                if (leadingToReplaced.contains(child) && !copies.containsKey(child)) {
+                    copies.put(child, copy(child));
+                    work.add(child);
+                }
+            }
+        }
+        for (Map.Entry<Object, Object> copy : copies.entrySet()) {
+            relink(copy.getKey(), copy.getValue());
+        }
+        for (Map.Entry<Object, Map<Field, Object>> replacement : replacements.entrySet()) {
+            Object copy = copies.get(replacement.getKey());
+            if (copy == null) {
+                throw new IllegalStateException("Object of type " + replacement.getKey().getClass().getName()
+                        + " holding a replaced field is not reachable from the subject");
+            }
+            for (Map.Entry<Field, Object> field : replacement.getValue().entrySet()) {
+                ReflectionUtils.setField(field.getKey(), copy, field.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return The copy of the object, or the object itself if nothing below it has been replaced
+     */
+    Object getCopy(Object original) {
+        Object copy = copies.get(original);
+        return copy != null ? copy : original;
+    }
+
+    /**
+     * @return The walked objects from which one of the targets can be reached, including the targets
+     */
+    private static Set<Object> findObjectsLeadingTo(Set<Object> targets, Set<Object> walked) {
+        Map<Object, List<Object>> referrers = new IdentityHashMap<Object, List<Object>>();
+        for (Object object : walked) {
+            for (Object child : getReferences(object)) {
+                if (walked.contains(child)) {
+                    List<Object> childReferrers = referrers.get(child);
+                    if (childReferrers == null) {
+                        childReferrers = new ArrayList<Object>(2);
+                        referrers.put(child, childReferrers);
+                    }
+                    childReferrers.add(object);
+                }
+            }
+        }
+        Set<Object> found = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        ArrayDeque<Object> work = new ArrayDeque<Object>(targets);
+        found.addAll(targets);
+        while (!work.isEmpty()) {
+            List<Object> objectReferrers = referrers.get(work.poll());
+            if (objectReferrers != null) {
+                for (Object referrer : objectReferrers) {
+                    if (found.add(referrer)) {
+                        work.add(referrer);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The (non null) objects the object refers to
+     */
+    private static List<Object> getReferences(Object object) {
+        List<Object> references = new ArrayList<Object>();
+        if (ProxyHelper.isProxy(object)) {
+            if (ProxyHelper.hasStaticTarget(object)) {
+                addIfNotNull(references, ProxyHelper.getProxyTarget(object));
+            }
+        } else if (object instanceof Object[]) {
+            for (Object element : (Object[]) object) {
+                addIfNotNull(references, element);
+            }
+        } else if (object instanceof Collection) {
+            for (Object element : (Collection<?>) object) {
+                addIfNotNull(references, element);
+            }
+        } else if (object instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                addIfNotNull(references, entry.getKey());
+                addIfNotNull(references, entry.getValue());
+            }
+        } else if (!object.getClass().isArray()) {
+            for (Field field : ObjectCopier.forClass(object.getClass()).getReferenceFields()) {
+                addIfNotNull(references, ReflectionUtils.getField(field, object));
+            }
+        }
+        return references;
+    }
+
+    private static void addIfNotNull(List<Object> references, Object reference) {
+        if (reference != null) {
+            references.add(reference);
+        }
+    }
+
+    private Object copy(Object original) {
+        if (ProxyHelper.isProxy(original)) {
+            return copyProxy(original);
+        }
+        if (original instanceof Object[]) {
+            return ((Object[]) original).clone();
+        }
+        if (original instanceof Collection || original instanceof Map) {
+            return copyContainer(original);
+        }
+        return ObjectCopier.forClass(original.getClass()).copy(original);
+    }
+
+    /**
+     * @return A new proxy with the same configuration and advice, whose target is set when it is relinked
+     */
+    private static Object copyProxy(Object original) {
+        Advised advised = ProxyHelper.getAdvised(original);
+        ProxyFactory factory = new ProxyFactory();
+        if (advised instanceof ProxyConfig) {
+            factory.copyFrom((ProxyConfig) advised);
+        }
+        factory.setFrozen(false);
+        factory.setInterfaces(advised.getProxiedInterfaces());
+        factory.addAdvisors(advised.getAdvisors());
+        factory.setTargetSource(advised.getTargetSource());
+        return factory.getProxy(original.getClass().getClassLoader());
+    }
+
+    /**
+     * Copy a collection or map so that the copy keeps its order, comparator and internal consistency: with its public
+     * clone method, with a copy constructor, or for the unmodifiable, immutable and synchronized collections of the JDK
+     * (which are not public classes) into a modifiable collection of the same kind wrapped the same way
+     */
+    private Object copyContainer(Object original) {
+        Class<?> type = original.getClass();
+        try {
+            if (original instanceof Cloneable) {
+                Method clone = findPublicClone(type);
+                if (clone != null) {
+                    return clone.invoke(original);
+                }
+            }
+            Constructor<?> copyConstructor = findCopyConstructor(type, original);
+            if (copyConstructor != null) {
+                return copyConstructor.newInstance(original);
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unable to copy " + type.getName() + " on the path to a replaced field", e);
+        }
+        Object copy = copyJdkView(original);
+        if (copy != null) {
+            return copy;
+        }
+        throw new IllegalArgumentException("Unable to copy " + type.getName() + " on the path to a replaced field, it has"
+                + " neither a public clone method nor a public copy constructor");
+    }
+
+    private static Method findPublicClone(Class<?> type) {
+        try {
+            Method clone = type.getMethod("clone");
+            return Modifier.isPublic(clone.getDeclaringClass().getModifiers()) ? clone : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return A public constructor taking a collection or map the original is, that keeps its ordering: for a sorted
+     * or priority collection or map, one taking its own type or a sorted one
+     */
+    private static Constructor<?> findCopyConstructor(Class<?> type, Object original) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return null;
+        }
+        boolean ordered = original instanceof SortedSet || original instanceof SortedMap || original instanceof PriorityQueue;
+        for (Constructor<?> constructor : type.getConstructors()) {
+            Class<?>[] parameters = constructor.getParameterTypes();
+            if (parameters.length != 1 || !parameters[0].isInstance(original)) {
+                continue;
+            }
+            Class<?> parameter = parameters[0];
+            if (ordered ? parameter == type || parameter == SortedSet.class || parameter == SortedMap.class
+                    : Collection.class.isAssignableFrom(parameter) || Map.class.isAssignableFrom(parameter)) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return A copy of a view (or immutable collection) of the JDK wrapping a modifiable copy of its contents the same
+     * way, or of a fixed size list backed by an array, or null if the original is none of those
+     */
+    @SuppressWarnings("unchecked")
+    private Object copyJdkView(Object original) {
+        String name = original.getClass().getName();
+        if (name.equals("java.util.Arrays$ArrayList")) {
+            return Arrays.asList(((List<Object>) original).toArray());
+        }
+        boolean synchronizedView = name.startsWith("java.util.Collections$Synchronized");
+        if (!synchronizedView && !name.startsWith("java.util.Collections$Unmodifiable")
+                && !name.startsWith("java.util.Collections$Empty") && !name.startsWith("java.util.Collections$Singleton")
+                && !name.startsWith("java.util.ImmutableCollections$")) {
+            return null;
+        }
+        Object contents;
+        if (synchronizedView) {
+            synchronized (original) {
+                contents = copyIntoModifiable(original);
+            }
+        } else {
+            contents = copyIntoModifiable(original);
+        }
+        Object copy = wrap(original, contents, synchronizedView);
+        viewContents.put(copy, contents);
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyIntoModifiable(Object original) {
+        if (original instanceof SortedSet) {
+            return new TreeSet<Object>((SortedSet<Object>) original);
+        }
+        if (original instanceof Set) {
+            return new LinkedHashSet<Object>((Set<Object>) original);
+        }
+        if (original instanceof List) {
+            return new ArrayList<Object>((List<Object>) original);
+        }
+        if (original instanceof SortedMap) {
+            return new TreeMap<Object, Object>((SortedMap<Object, Object>) original);
+        }
+        if (original instanceof Map) {
+            return new LinkedHashMap<Object, Object>((Map<Object, Object>) original);
+        }
+        return new ArrayList<Object>((Collection<Object>) original);
+    }
+
+    /**
+     * @return The contents wrapped in the unmodifiable or synchronized view of the most specific kind the original is
+     */
+    @SuppressWarnings("unchecked")
+    private static Object wrap(Object original, Object contents, boolean synchronizedView) {
+        if (original instanceof NavigableSet) {
+            NavigableSet<Object> set = (NavigableSet<Object>) contents;
+            return synchronizedView ? Collections.synchronizedNavigableSet(set) : Collections.unmodifiableNavigableSet(set);
+        }
+        if (original instanceof SortedSet) {
+            SortedSet<Object> set = (SortedSet<Object>) contents;
+            return synchronizedView ? Collections.synchronizedSortedSet(set) : Collections.unmodifiableSortedSet(set);
+        }
+        if (original instanceof Set) {
+            Set<Object> set = (Set<Object>) contents;
+            return synchronizedView ? Collections.synchronizedSet(set) : Collections.unmodifiableSet(set);
+        }
+        if (original instanceof List) {
+            List<Object> list = (List<Object>) contents;
+            return synchronizedView ? Collections.synchronizedList(list) : Collections.unmodifiableList(list);
+        }
+        if (original instanceof NavigableMap) {
+            NavigableMap<Object, Object> map = (NavigableMap<Object, Object>) contents;
+            return synchronizedView ? Collections.synchronizedNavigableMap(map) : Collections.unmodifiableNavigableMap(map);
+        }
+        if (original instanceof SortedMap) {
+            SortedMap<Object, Object> map = (SortedMap<Object, Object>) contents;
+            return synchronizedView ? Collections.synchronizedSortedMap(map) : Collections.unmodifiableSortedMap(map);
+        }
+        if (original instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) contents;
+            return synchronizedView ? Collections.synchronizedMap(map) : Collections.unmodifiableMap(map);
+        }
+        Collection<Object> collection = (Collection<Object>) contents;
+        return synchronizedView ? Collections.synchronizedCollection(collection) : Collections.unmodifiableCollection(collection);
+    }
+
+    /**
+     * Point the references of the copy to objects which have been copied at the copies
+     */
+    @SuppressWarnings("unchecked")
+    private void relink(Object original, Object copy) {
+        if (viewContents.containsKey(copy)) {
+            copy = viewContents.get(copy); // relinked through the modifiable contents the view wraps
+        }
+        if (ProxyHelper.isProxy(original)) {
+            Object target = ProxyHelper.hasStaticTarget(original) ? ProxyHelper.getProxyTarget(original) : null;
+            if (target != null && copies.containsKey(target)) {
+                ((Advised) copy).setTargetSource(new SingletonTargetSource(copies.get(target)));
+            }
+        } else if (copy instanceof Object[]) {
+            Object[] elements = (Object[]) copy;
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = getCopy(elements[i]);
+            }
+        } else if (copy instanceof List) {
+            List<Object> list = (List<Object>) copy;
+            for (int i = 0, size = list.size(); i < size; i++) {
+                Object element = list.get(i);
+                if (element != null && copies.containsKey(element)) {
+                    list.set(i, copies.get(element));
+                }
+            }
+        } else if (copy instanceof Collection) {
+            // rebuilt, replacing elements by identity, so that sets and queues place the copies themselves
+            Collection<Object> collection = (Collection<Object>) copy;
+            List<Object> elements = new ArrayList<Object>(collection.size());
+            boolean changed = false;
+            for (Object element : collection) {
+                Object elementCopy = getCopy(element);
+                changed |= elementCopy != element;
+                elements.add(elementCopy);
+            }
+            if (changed) {
+                collection.clear();
+                collection.addAll(elements);
+            }
+        } else if (copy instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) copy;
+            List<Map.Entry<Object, Object>> entries = new ArrayList<Map.Entry<Object, Object>>(map.size());
+            boolean changed = false;
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                Object key = getCopy(entry.getKey());
+                Object value = getCopy(entry.getValue());
+                changed |= key != entry.getKey() || value != entry.getValue();
+                entries.add(new AbstractMap.SimpleEntry<Object, Object>(key, value));
+            }
+            if (changed) {
+                map.clear();
+                for (Map.Entry<Object, Object> entry : entries) {
+                    map.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } else {
+            for (Field field : ObjectCopier.forClass(copy.getClass()).getReferenceFields()) {
+                Object value = ReflectionUtils.getField(field, copy);
+                if (value != null && copies.containsKey(value)) {
+                    ReflectionUtils.setField(field, copy, copies.get(value));
+                }
+            }
+        }
+    }
+}
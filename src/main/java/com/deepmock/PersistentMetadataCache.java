@@ -0,0 +1,295 @@
+package com.deepmock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * On disk cache of the field lists of {@link FieldCache}, shared by all the (forked) test JVMs of a build so that later
+ * JVMs start with the metadata computed by earlier ones.
+ *
+ * Entries are keyed by class name and a checksum of the bytes of the class and its superclasses, so an entry is
+ * ignored (and replaced) as soon as the class hierarchy is recompiled.  The file is read through a memory mapping under
+ * a shared lock and new entries are appended under an exclusive lock when the JVM exits, so several JVMs can use the
+ * same file concurrently.
+ *
+ * Enable it by setting the system property <code>deepmock.metadataCache</code> to the cache file, e.g.
+ * <code>target/deepmock-metadata.cache</code> (for example through the surefire systemPropertyVariables).
+ */
+final class PersistentMetadataCache {
+    static final String FILE_PROPERTY = "deepmock.metadataCache";
+
+    private static final Log LOG = LogFactory.getLog(PersistentMetadataCache.class);
+    private static final int MAGIC = 0x444d4331;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private final List<Entry> pending = new ArrayList<Entry>();
+    private final ConcurrentMap<Class<?>, Long> checksums = new ConcurrentHashMap<Class<?>, Long>();
+    private boolean corrupt;
+
+    /**
+     * @return The cache configured by the system property, or null if none is configured
+     */
+    static PersistentMetadataCache fromSystemProperty() {
+        String fileName = System.getProperty(FILE_PROPERTY);
+        if (fileName == null || fileName.length() == 0) {
+            return null;
+        }
+        final PersistentMetadataCache cache = new PersistentMetadataCache(new File(fileName));
+        cache.load();
+        Runtime.getRuntime().addShutdownHook(new Thread("deepmock-metadata-cache") {
+            @Override
+            public void run() {
+                cache.flush();
+            }
+        });
+        return cache;
+    }
+
+    private PersistentMetadataCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return The cached fields of the given kind for the class, or null if they are not cached or the class changed
+     */
+    synchronized List<Field> getFields(Class<?> clazz, String kind) {
+        Entry entry = entries.get(key(clazz.getName(), kind));
+        if (entry == null || entry.checksum != getChecksum(clazz)) {
+            return null;
+        }
+        try {
+            List<Field> fields = new ArrayList<Field>(entry.fieldNames.length);
+            for (int i = 0; i < entry.fieldNames.length; i++) {
+                Class<?> declaringClass = Class.forName(entry.declaringClassNames[i], false, clazz.getClassLoader());
+                fields.add(declaringClass.getDeclaredField(entry.fieldNames[i]));
+            }
+            return fields;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    synchronized void putFields(Class<?> clazz, String kind, List<Field> fields) {
+        String[] declaringClassNames = new String[fields.size()];
+        String[] fieldNames = new String[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            declaringClassNames[i] = fields.get(i).getDeclaringClass().getName();
+            fieldNames[i] = fields.get(i).getName();
+        }
+        Entry entry = new Entry(clazz.getName(), kind, getChecksum(clazz), declaringClassNames, fieldNames);
+        entries.put(key(entry.className, kind), entry);
+        pending.add(entry);
+    }
+
+    private long getChecksum(Class<?> clazz) {
+        Long checksum = checksums.get(clazz);
+        if (checksum == null) {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[8192];
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                addClassBytes(c, crc, buffer);
+            }
+            checksum = crc.getValue();
+            checksums.put(clazz, checksum);
+        }
+        return checksum;
+    }
+
+    private static void addClassBytes(Class<?> clazz, CRC32 crc, byte[] buffer) {
+        ClassLoader classLoader = clazz.getClassLoader() != null ? clazz.getClassLoader() : ClassLoader.getSystemClassLoader();
+        InputStream in = classLoader.getResourceAsStream(clazz.getName().replace('.', '/') + ".class");
+        if (in == null) {
+            crc.update(clazz.getName().getBytes(UTF8));
+            return;
+        }
+        try {
+            try {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            crc.update(clazz.getName().getBytes(UTF8));
+        }
+    }
+
+    private synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+                try {
+                    read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to read DeepMock metadata cache " + file, e);
+        }
+    }
+
+    private void read(MappedByteBuffer buffer) {
+        if (buffer.remaining() == 0) {
+            return;
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                corrupt = true;
+                return;
+            }
+            while (buffer.hasRemaining()) {
+                Entry entry = readEntry(buffer);
+                entries.put(key(entry.className, entry.kind), entry); // later entries supersede earlier ones
+            }
+        } catch (BufferUnderflowException e) {
+            corrupt = true; // truncated by a JVM that died while writing
+        }
+    }
+
+    private synchronized void flush() {
+        if (pending.isEmpty() && !corrupt) {
+            return;
+        }
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                FileLock lock = channel.lock();
+                try {
+                    write(channel);
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to write DeepMock metadata cache " + file, e);
+        }
+    }
+
+    private void write(FileChannel channel) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (corrupt || channel.size() == 0) {
+            channel.truncate(0);
+            out.writeInt(MAGIC);
+            for (Entry entry : entries.values()) {
+                writeEntry(entry, out);
+            }
+        } else {
+            for (Entry entry : pending) {
+                writeEntry(entry, out);
+            }
+        }
+        out.flush();
+        channel.position(channel.size());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        pending.clear();
+        corrupt = false;
+    }
+
+    private static void writeEntry(Entry entry, DataOutputStream out) throws IOException {
+        writeString(entry.className, out);
+        writeString(entry.kind, out);
+        out.writeLong(entry.checksum);
+        out.writeInt(entry.fieldNames.length);
+        for (int i = 0; i < entry.fieldNames.length; i++) {
+            writeString(entry.declaringClassNames[i], out);
+            writeString(entry.fieldNames[i], out);
+        }
+    }
+
+    private static void writeString(String string, DataOutputStream out) throws IOException {
+        byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Entry readEntry(ByteBuffer buffer) {
+        String className = readString(buffer);
+        String kind = readString(buffer);
+        long checksum = buffer.getLong();
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String[] declaringClassNames = new String[count];
+        String[] fieldNames = new String[count];
+        for (int i = 0; i < count; i++) {
+            declaringClassNames[i] = readString(buffer);
+            fieldNames[i] = readString(buffer);
+        }
+        return new Entry(className, kind, checksum, declaringClassNames, fieldNames);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static String key(String className, String kind) {
+        return kind + ':' + className;
+    }
+
+    private static final class Entry {
+        private final String className;
+        private final String kind;
+        private final long checksum;
+        private final String[] declaringClassNames;
+        private final String[] fieldNames;
+
+        private Entry(String className, String kind, long checksum, String[] declaringClassNames, String[] fieldNames) {
+            this.className = className;
+            this.kind = kind;
+            this.checksum = checksum;
+            this.declaringClassNames = declaringClassNames;
+            this.fieldNames = fieldNames;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.deepmock;
+
+/**
+ * What to do when the object graph reaches a proxy whose target is not static, i.e. whose TargetSource creates or
+ * borrows a target per invocation or on first use (lazy-init, prototype, pooled and scoped target sources).  Proxies
+ * with a static target are always traversed into their target.
+ * @see DeepMockConfiguration#proxyTargets()
+ */
+public enum ProxyTargetPolicy {
+    /**
+     * Do not traverse into the target
+     */
+    SKIP,
+
+    /**
+     * Add advice to the proxy that injects mocks into whichever target serves each invocation.  The target is only
+     * created when the proxy is actually used, so lazy beans stay lazy.  The advice is removed on restore.  A frozen
+     * proxy cannot be advised, so it is handled as with {@link #REPLACE_TARGET_SOURCE} (and a warning logged).
+     */
+    ADVISE,
+
+    /**
+     * Obtain a single target from the TargetSource, inject into it and make it serve all invocations until restore, when
+     * the original TargetSource is put back and the target released to it
+     */
+    REPLACE_TARGET_SOURCE
+}
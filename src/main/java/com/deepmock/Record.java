@@ -0,0 +1,28 @@
+package com.deepmock;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+
+/**
+ * Replaces the real collaborator of the field's type found in the object graph of the {@link Subject} with a stand-in
+ * that calls through to it, recording the result (or exception) of each invocation against its arguments.  The
+ * recording replaces any previous one when the original fields are restored, ready to be used with {@link Replay}.
+ * The field is set to the stand-in.
+ * <pre>
+ *   &#64;Record
+ *   PricingEngine pricingEngine;
+ * </pre>
+ * Only invocations whose arguments and result are Serializable are recorded.
+ */
+@Target({ FIELD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Record {
+
+    /**
+     * The recording file, by default <code>target/deepmock-recordings/&lt;test class&gt;.&lt;field&gt;.rec</code>
+     */
+    String file() default "";
+}
@@ -0,0 +1,86 @@
+package com.deepmock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Default answer of the stand-in for a recorded or replayed collaborator: answers from the {@link RecordingStore} when
+ * replaying, otherwise calls through to the real collaborator and records the outcome.  Invocations whose arguments or
+ * outcome can not be serialized are not recorded, which is logged once per method as such an invocation calls through
+ * to the real collaborator on every run.
+ */
+final class RecordingAnswer implements Answer<Object> {
+    private static final Log LOG = LogFactory.getLog(RecordingAnswer.class);
+
+    private final Object collaborator;
+    private final RecordingStore store;
+    private final boolean replay;
+    private final Set<Method> unrecordable = new HashSet<Method>();
+
+    RecordingAnswer(Object collaborator, RecordingStore store, boolean replay) {
+        this.collaborator = collaborator;
+        this.store = store;
+        this.replay = replay;
+    }
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        if (method.getDeclaringClass() == Object.class) {
+            return invoke(method, invocation.getArguments());
+        }
+        RecordingStore.Key key = RecordingStore.key(method, invocation.getArguments());
+        if (key == null) {
+            warnUnrecordable(method, "arguments");
+        }
+        if (replay && key != null) {
+            RecordingStore.Outcome outcome = store.get(key);
+            if (outcome != null) {
+                return outcome.replay();
+            }
+        }
+        Object result;
+        try {
+            result = invoke(method, invocation.getArguments());
+        } catch (Throwable e) {
+            record(method, key, new RecordingStore.Outcome(null, e));
+            throw e;
+        }
+        record(method, key, new RecordingStore.Outcome(result, null));
+        return result;
+    }
+
+    private void record(Method method, RecordingStore.Key key, RecordingStore.Outcome outcome) {
+        if (key != null && !store.put(key, outcome)) {
+            warnUnrecordable(method, "outcome");
+        }
+    }
+
+    private void warnUnrecordable(Method method, String what) {
+        synchronized (unrecordable) {
+            if (!unrecordable.add(method)) {
+                return;
+            }
+        }
+        LOG.warn("Not recording invocations of " + method + " as their " + what + " can not be serialized, "
+                + (replay ? "they are not replayed and call through to " : "they will call through to ")
+                + "the real collaborator on every run");
+    }
+
+    private Object invoke(Method method, Object[] arguments) throws Throwable {
+        ReflectionUtils.makeAccessible(method);
+        try {
+            return method.invoke(collaborator, arguments);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
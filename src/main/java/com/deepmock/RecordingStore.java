@@ -0,0 +1,347 @@
+package com.deepmock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The recorded invocations of one collaborator (see {@link Record} and {@link Replay}).
+ *
+ * The file is a sequence of entries, each the serialized {@link Key} of an invocation followed by the serialized result
+ * or exception.  An index of the offset of every recorded result is kept in memory and the serialized results
+ * themselves in a least recently used cache, reading them back from the file on a miss.
+ */
+final class RecordingStore {
+    private final File file;
+    private final Map<Key, Long> index = new HashMap<Key, Long>();
+    private final Map<Key, byte[]> pending = new LinkedHashMap<Key, byte[]>();
+    private final Map<Key, byte[]> cache;
+    private RandomAccessFile reader;
+    private boolean truncate;
+    private long completeLength = -1;
+
+    /**
+     * @param replay true to load the existing recording, false to replace it
+     */
+    RecordingStore(File file, boolean replay, int maxCachedResults) {
+        this.file = file;
+        this.cache = new LruCache(maxCachedResults);
+        if (replay) {
+            loadIndex();
+        } else {
+            truncate = true;
+        }
+    }
+
+    /**
+     * @return The key of an invocation, or null if its arguments cannot be serialized
+     */
+    static Key key(Method method, Object[] arguments) {
+        Object[] components = new Object[arguments.length + 1];
+        components[0] = method.toGenericString();
+        for (int i = 0; i < arguments.length; i++) {
+            if (hasValueEquality(arguments[i])) {
+                components[i + 1] = arguments[i];
+            } else {
+                byte[] bytes = serialize(arguments[i]);
+                if (bytes == null) {
+                    return null;
+                }
+                components[i + 1] = new SerializedArgument(bytes);
+            }
+        }
+        byte[] bytes = serialize(components);
+        // key on a copy, as the arguments may be modified after the invocation
+        return bytes != null ? new Key(bytes) : null;
+    }
+
+    /**
+     * @return true if the argument is null or can be compared with equals(): its class overrides equals and, for an
+     * array, collection or map, so do its elements
+     */
+    private static boolean hasValueEquality(Object argument) {
+        if (argument == null) {
+            return true;
+        }
+        if (argument instanceof Object[]) {
+            return allHaveValueEquality(Arrays.asList((Object[]) argument));
+        }
+        if (argument.getClass().isArray()) {
+            return true; // array of primitives
+        }
+        if (argument instanceof Collection) {
+            return allHaveValueEquality((Collection<?>) argument);
+        }
+        if (argument instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) argument;
+            return allHaveValueEquality(map.keySet()) && allHaveValueEquality(map.values());
+        }
+        try {
+            return argument.getClass().getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean allHaveValueEquality(Collection<?> elements) {
+        for (Object element : elements) {
+            if (!hasValueEquality(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The recorded outcome, or null if the invocation has not been recorded
+     */
+    synchronized Outcome get(Key key) {
+        byte[] result = pending.get(key);
+        if (result == null) {
+            result = cache.get(key);
+        }
+        if (result == null) {
+            Long offset = index.get(key);
+            if (offset == null) {
+                return null;
+            }
+            result = read(offset);
+            cache.put(key, result);
+        }
+        return (Outcome) deserialize(result);
+    }
+
+    /**
+     * Record an outcome, ignored if it can not be serialized
+     * @return false if the outcome can not be serialized
+     */
+    synchronized boolean put(Key key, Outcome outcome) {
+        byte[] result = serialize(outcome);
+        if (result == null) {
+            return false;
+        }
+        pending.put(key, result);
+        return true;
+    }
+
+    /**
+     * Write the outcomes recorded since the last flush to the file
+     */
+    synchronized void flush() throws IOException {
+        if (pending.isEmpty() && !truncate) {
+            return;
+        }
+        closeReader();
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            if (truncate) {
+                out.setLength(0);
+                truncate = false;
+            } else if (completeLength >= 0) {
+                out.setLength(completeLength); // drop a partly written last entry before appending
+                completeLength = -1;
+            }
+            out.seek(out.length());
+            for (Map.Entry<Key, byte[]> entry : pending.entrySet()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream data = new DataOutputStream(bytes);
+                data.writeInt(entry.getKey().bytes.length);
+                data.write(entry.getKey().bytes);
+                data.writeInt(entry.getValue().length);
+                long offset = out.getFilePointer() + bytes.size();
+                data.write(entry.getValue());
+                data.flush();
+                out.write(bytes.toByteArray());
+                index.put(entry.getKey(), offset);
+                cache.put(entry.getKey(), entry.getValue());
+            }
+            pending.clear();
+        } finally {
+            out.close();
+        }
+    }
+
+    synchronized void close() throws IOException {
+        closeReader();
+    }
+
+    private void loadIndex() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            long length = in.length();
+            long end = 0;
+            try {
+                while (end < length) {
+                    int keyLength = in.readInt();
+                    if (keyLength < 0 || in.getFilePointer() + keyLength > length) {
+                        break; // truncated last entry, ignore it
+                    }
+                    byte[] key = new byte[keyLength];
+                    in.readFully(key);
+                    int resultLength = in.readInt();
+                    long offset = in.getFilePointer();
+                    if (resultLength < 0 || offset + resultLength > length) {
+                        break; // truncated last entry, ignore it
+                    }
+                    index.put(new Key(key), offset);
+                    end = offset + resultLength;
+                    in.seek(end);
+                }
+            } catch (EOFException e) {
+                // truncated last entry, ignore it
+            } finally {
+                in.close();
+            }
+            if (end < length) {
+                completeLength = end;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read recording " + file, e);
+        }
+    }
+
+    private byte[] read(long offset) {
+        try {
+            if (reader == null) {
+                reader = new RandomAccessFile(file, "r");
+            }
+            reader.seek(offset - 4);
+            byte[] result = new byte[reader.readInt()];
+            reader.readFully(result);
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read recording " + file, e);
+        }
+    }
+
+    private void closeReader() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            return null; // not serializable
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try {
+            return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to deserialize recording", e);
+        }
+    }
+
+    /**
+     * The method and arguments of an invocation.  Arguments that can be compared with equals are, so that equal
+     * arguments match whatever their internal layout or aliasing, and other arguments by their serialized form.
+     * The serialized key is kept to be written to the file.
+     */
+    static final class Key {
+        private final byte[] bytes;
+        private final Object[] components;
+        private final int hashCode;
+
+        private Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.components = (Object[]) deserialize(bytes);
+            this.hashCode = Arrays.deepHashCode(components);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.deepEquals(components, ((Key) o).components);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The serialized form of an argument that can not be compared with equals
+     */
+    private static final class SerializedArgument implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] bytes;
+
+        private SerializedArgument(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SerializedArgument && Arrays.equals(bytes, ((SerializedArgument) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+    }
+
+    private static final class LruCache extends LinkedHashMap<Key, byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private LruCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * The result of an invocation or the exception it threw
+     */
+    static final class Outcome implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Object result;
+        private final Throwable thrown;
+
+        Outcome(Object result, Throwable thrown) {
+            this.result = result;
+            this.thrown = thrown;
+        }
+
+        Object replay() throws Throwable {
+            if (thrown != null) {
+                throw thrown;
+            }
+            return result;
+        }
+    }
+}
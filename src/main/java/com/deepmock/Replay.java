@@ -0,0 +1,33 @@
+package com.deepmock;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+
+/**
+ * Replaces the real collaborator of the field's type found in the object graph of the {@link Subject} with a stand-in
+ * answering from a recording (see {@link Record}), so that expensive but deterministic collaborators are not run again.
+ * Invocations missing from the recording call through to the real collaborator and are added to the recording, so the
+ * first run of a test records it.  The field is set to the stand-in.
+ * <pre>
+ *   &#64;Replay
+ *   PricingEngine pricingEngine;
+ * </pre>
+ * Recorded results are held in memory in a least recently used cache, and are otherwise read back from the file.
+ */
+@Target({ FIELD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Replay {
+
+    /**
+     * The recording file, by default <code>target/deepmock-recordings/&lt;test class&gt;.&lt;field&gt;.rec</code>
+     */
+    String file() default "";
+
+    /**
+     * How many recorded results to keep in memory
+     */
+    int maxCachedResults() default 1000;
+}
@@ -1,12 +1,9 @@
 package com.deepmock;
 
-import org.junit.runner.Description;
-import org.junit.runner.notification.RunListener;
-import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
-import static org.mockito.MockitoAnnotations.initMocks;
-
 
 /**
  * JUnit runner that initialises a Spring context and then injects Mocktio mocks into a test field annotated with the
@@ -44,40 +41,87 @@ import static org.mockito.MockitoAnnotations.initMocks;
  * <p/>
  * <p/>
  * The original state of the subject will be reinstated after each test so that downstream tests may rely on an object
- * graph that is accurate of that initially wired by Spring for the defined context.
+ * graph that is accurate of that initially wired by Spring for the defined context.  Annotate the test with
+ * <code>&#064;DeepMockConfiguration(verifyIntegrity = true)</code> to fail any test that leaves the graph modified.
  */
 public class SpringWithMockitoRunner extends SpringJUnit4ClassRunner {
 
     private Object test;
     private DeepMockHandler deepMockHandler;
+    private ClassScopedInjection classScopedInjection;
 
     public SpringWithMockitoRunner(Class<?> clazz) throws Exception {
         super(clazz);
+        getTestContextManager().registerTestExecutionListeners(MetadataPrewarmer.testExecutionListener());
+        if (ClassScopedInjection.isClassScoped(clazz)) {
+            classScopedInjection = new ClassScopedInjection(true);
+        }
     }
 
     @Override
     protected Object createTest() throws Exception {
         test = createTestWithSpringContext();
-        initMocks(test);
+        if (classScopedInjection != null) {
+            classScopedInjection.beforeTestMethod(test);
+            return test;
+        }
+        MockPool.createMocks(test);
         deepMockHandler = new DeepMockHandler(test);
-        deepMockHandler.injectMocksIntoObjectGraphOfSubject(true);
+        try {
+            deepMockHandler.injectMocksIntoObjectGraphOfSubject(true);
+        } catch (RuntimeException e) {
+            deepMockHandler.restoreOriginalFields();
+            throw e;
+        }
         return test;
     }
 
     @Override
-    public void run(RunNotifier notifier) {
-        notifier.addListener(new RestoreOriginalFieldsAfterTestRunListener());
-        super.run(notifier);
+    protected Statement withAfters(FrameworkMethod frameworkMethod, Object testInstance, Statement statement) {
+        Statement afters = super.withAfters(frameworkMethod, testInstance, statement);
+        return classScopedInjection != null ? afters : new RestoreOriginalFieldsStatement(afters);
+    }
+
+    @Override
+    protected Statement withAfterClasses(final Statement statement) {
+        final Statement afterClasses = super.withAfterClasses(statement);
+        if (classScopedInjection == null) {
+            return afterClasses;
+        }
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                try {
+                    afterClasses.evaluate();
+                } finally {
+                    classScopedInjection.afterTestClass();
+                }
+            }
+        };
     }
 
     private Object createTestWithSpringContext() throws Exception {
         return super.createTest();
     }
 
-    private class RestoreOriginalFieldsAfterTestRunListener extends RunListener {
+    private class RestoreOriginalFieldsStatement extends Statement {
+        private final Statement next;
 
-        public void testFinished(Description description) {
-            deepMockHandler.restoreOriginalFields();
+        private RestoreOriginalFieldsStatement(Statement next) {
+            this.next = next;
+        }
+
+        @Override
+        public void evaluate() throws Throwable {
+            Throwable failure = null;
+            try {
+                next.evaluate();
+            } catch (Throwable t) {
+                failure = t;
+                throw t;
+            } finally {
+                deepMockHandler.restoreOriginalFields(failure);
+            }
         }
     }
 }
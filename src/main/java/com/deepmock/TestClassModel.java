@@ -0,0 +1,273 @@
+package com.deepmock;
+
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable model of the annotated fields of a test class, including those inherited from superclasses.  The model is
+ * built once per test class and cached, so that each test method only has to read the field values.
+ */
+public final class TestClassModel {
+    private static final ConcurrentMap<Class<?>, TestClassModel> MODELS = new ConcurrentHashMap<Class<?>, TestClassModel>();
+
+    private final Map<Class<? extends Annotation>, List<AnnotatedField>> annotatedFields;
+    private final List<AnnotatedField> subjectFields;
+    private final List<AnnotatedField> mockFields;
+
+    public static TestClassModel forClass(Class<?> testClass) {
+        TestClassModel model = MODELS.get(testClass);
+        if (model == null) {
+            model = new TestClassModel(testClass);
+            TestClassModel existing = MODELS.putIfAbsent(testClass, model);
+            if (existing != null) {
+                model = existing;
+            }
+        }
+        return model;
+    }
+
+    private TestClassModel(Class<?> testClass) {
+        Map<Class<? extends Annotation>, List<AnnotatedField>> fields = new HashMap<Class<? extends Annotation>, List<AnnotatedField>>();
+        for (Class<?> clazz : getHierarchy(testClass)) {
+            for (Field field : clazz.getDeclaredFields()) {
+                addField(testClass, field, fields);
+            }
+        }
+        for (Map.Entry<Class<? extends Annotation>, List<AnnotatedField>> entry : fields.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.annotatedFields = Collections.unmodifiableMap(fields);
+        this.subjectFields = getAnnotatedFields(Subject.class);
+        List<AnnotatedField> mocksAndSpies = new ArrayList<AnnotatedField>(getAnnotatedFields(Mock.class));
+        mocksAndSpies.addAll(getAnnotatedFields(Spy.class));
+        this.mockFields = Collections.unmodifiableList(mocksAndSpies);
+    }
+
+    /**
+     * @return The fields (declared or inherited) annotated with the given annotation, superclass fields first
+     */
+    public List<AnnotatedField> getAnnotatedFields(Class<? extends Annotation> annotation) {
+        List<AnnotatedField> fields = annotatedFields.get(annotation);
+        return fields == null ? Collections.<AnnotatedField>emptyList() : fields;
+    }
+
+    public List<AnnotatedField> getSubjectFields() {
+        return subjectFields;
+    }
+
+    /**
+     * @return The fields annotated with {@link Mock} or {@link Spy}
+     */
+    public List<AnnotatedField> getMockFields() {
+        return mockFields;
+    }
+
+    /**
+     * @return The (non null) values of the given fields keyed by their (resolved) generic type, in the order the types
+     * are first declared.  When several fields have the same type, the value of the last one wins.
+     * @see #getFieldsByType(Collection)
+     */
+    public static Map<Type, Object> getValuesByType(Object testInstance, Collection<AnnotatedField> fields) {
+        Map<Type, Object> values = new LinkedHashMap<Type, Object>();
+        for (AnnotatedField field : fields) {
+            Object value = field.getValue(testInstance);
+            if (value != null) {
+                values.put(field.getGenericType(), value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The given fields keyed by their (resolved) generic type, in the order the types are first declared.  When
+     * several fields have the same type the last one wins, as it does for {@link #getValuesByType(Object, Collection)}.
+     */
+    public static Map<Type, AnnotatedField> getFieldsByType(Collection<AnnotatedField> fields) {
+        Map<Type, AnnotatedField> byType = new LinkedHashMap<Type, AnnotatedField>();
+        for (AnnotatedField field : fields) {
+            byType.put(field.getGenericType(), field);
+        }
+        return byType;
+    }
+
+    public static Collection<Object> getValues(Object testInstance, Collection<AnnotatedField> fields) {
+        Collection<Object> values = new ArrayList<Object>(fields.size());
+        for (AnnotatedField field : fields) {
+            values.add(field.getValue(testInstance));
+        }
+        return values;
+    }
+
+    private static List<Class<?>> getHierarchy(Class<?> testClass) {
+        LinkedList<Class<?>> hierarchy = new LinkedList<Class<?>>();
+        for (Class<?> clazz = testClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            hierarchy.addFirst(clazz);
+        }
+        return hierarchy;
+    }
+
+    private static void addField(Class<?> testClass, Field field, Map<Class<? extends Annotation>, List<AnnotatedField>> fields) {
+        Annotation[] annotations = field.getDeclaredAnnotations();
+        if (annotations.length == 0) {
+            return;
+        }
+        AnnotatedField annotatedField = new AnnotatedField(field, resolveGenericType(testClass, field));
+        for (Annotation annotation : annotations) {
+            List<AnnotatedField> annotated = fields.get(annotation.annotationType());
+            if (annotated == null) {
+                annotated = new ArrayList<AnnotatedField>();
+                fields.put(annotation.annotationType(), annotated);
+            }
+            annotated.add(annotatedField);
+        }
+    }
+
+    private static Type resolveGenericType(Class<?> testClass, Field field) {
+        Type genericType = field.getGenericType();
+        if (!hasTypeVariables(genericType)) {
+            return genericType;
+        }
+        return toType(ResolvableType.forField(field, testClass));
+    }
+
+    private static boolean hasTypeVariables(Type type) {
+        if (type instanceof TypeVariable) {
+            return true;
+        } else if (type instanceof ParameterizedType) {
+            for (Type argument : ((ParameterizedType)type).getActualTypeArguments()) {
+                if (hasTypeVariables(argument)) {
+                    return true;
+                }
+            }
+        } else if (type instanceof GenericArrayType) {
+            return hasTypeVariables(((GenericArrayType)type).getGenericComponentType());
+        } else if (type instanceof WildcardType) {
+            return true;
+        }
+        return false;
+    }
+
+    private static Type toType(ResolvableType resolvableType) {
+        Class<?> raw = resolvableType.resolve(Object.class);
+        if (!resolvableType.hasGenerics()) {
+            return raw;
+        }
+        ResolvableType[] generics = resolvableType.getGenerics();
+        Type[] arguments = new Type[generics.length];
+        for (int i = 0; i < generics.length; i++) {
+            arguments[i] = toType(generics[i]);
+        }
+        return new ResolvedParameterizedType(raw, arguments);
+    }
+
+    /**
+     * A field of the test class along with its generic type as resolved against the test class
+     */
+    public static final class AnnotatedField {
+        private final Field field;
+        private final Type genericType;
+
+        private AnnotatedField(Field field, Type genericType) {
+            ReflectionUtils.makeAccessible(field);
+            this.field = field;
+            this.genericType = genericType;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public Type getGenericType() {
+            return genericType;
+        }
+
+        public Object getValue(Object testInstance) {
+            return ReflectionUtils.getField(field, testInstance);
+        }
+
+        public void setValue(Object testInstance, Object value) {
+            ReflectionUtils.setField(field, testInstance, value);
+        }
+
+        @Override
+        public String toString() {
+            return field.toString();
+        }
+    }
+
+    /**
+     * A parameterized type whose type variables have been resolved.  Equal to the JDK representation of the same type.
+     */
+    private static final class ResolvedParameterizedType implements ParameterizedType {
+        private final Class<?> rawType;
+        private final Type[] arguments;
+
+        private ResolvedParameterizedType(Class<?> rawType, Type[] arguments) {
+            this.rawType = rawType;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return arguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return rawType.getDeclaringClass();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ParameterizedType)) {
+                return false;
+            }
+            ParameterizedType other = (ParameterizedType)o;
+            Type ownerType = getOwnerType();
+            return rawType.equals(other.getRawType())
+                    && (ownerType == null ? other.getOwnerType() == null : ownerType.equals(other.getOwnerType()))
+                    && Arrays.equals(arguments, other.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            Type ownerType = getOwnerType();
+            return Arrays.hashCode(arguments) ^ (ownerType == null ? 0 : ownerType.hashCode()) ^ rawType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(rawType.getName()).append('<');
+            for (int i = 0; i < arguments.length; i++) {
+                sb.append(i == 0 ? "" : ", ").append(arguments[i] instanceof Class ? ((Class)arguments[i]).getName() : arguments[i]);
+            }
+            return sb.append('>').toString();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.deepmock;
+
+/**
+ * The order in which the object graph of the {@link Subject} is walked.
+ * @see DeepMockConfiguration#traversalOrder()
+ */
+public enum TraversalOrder {
+    /**
+     * Follow each path as deep as it goes before moving on to the next one
+     */
+    DEPTH_FIRST,
+
+    /**
+     * Visit objects in order of their distance from the subject, so each object (and each replaced field) is reached
+     * through the shortest path from the subject
+     */
+    BREADTH_FIRST
+}
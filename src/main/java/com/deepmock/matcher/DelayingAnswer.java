@@ -0,0 +1,148 @@
+package com.deepmock.matcher;
+
+import org.mockito.Mockito;
+import org.mockito.exceptions.base.MockitoException;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delays each invocation by a latency sampled from a {@link LatencyDistribution} before answering, so that a deep
+ * injected mock of a slow collaborator (a DAO, a remote client) can be used to exercise the subject's timeouts, bulkheads
+ * and thread pools under realistic downstream latency.
+ * <pre>
+ *   when(remoteClient.fetch(anyString())).thenAnswer(DelayingAnswer.withLatency(logNormal(20, 250, MILLISECONDS))
+ *           .withJitter(0.1)
+ *           .failingAtRate(0.01, SocketTimeoutException.class)
+ *           .thenAnswer(new Returns(response)));
+ * </pre>
+ * The invoking thread is parked (rather than spinning) for the delay, which also only unmounts a virtual thread on
+ * JVMs that have them.  An interrupt ends the delay early, leaving the thread's interrupt status set.
+ *
+ * As with Mockito's <code>thenThrow</code>, a checked error must be declared by the stubbed method: an error type that
+ * is not fails every invocation (whether or not it would have failed), and an error created by a factory fails the
+ * invocation that would throw it.
+ */
+public class DelayingAnswer<T> implements Answer<T> {
+    private final LatencyDistribution latency;
+    private Answer<T> answer;
+    private double jitter;
+    private double errorRate;
+    private Callable<? extends Throwable> errorFactory;
+    private Class<? extends Throwable> errorType;
+    private Random random;
+
+    public static DelayingAnswer<Object> withLatency(LatencyDistribution latency) {
+        return new DelayingAnswer<Object>(latency, Mockito.RETURNS_DEFAULTS);
+    }
+
+    public DelayingAnswer(LatencyDistribution latency, Answer<T> answer) {
+        this.latency = latency;
+        this.answer = answer;
+    }
+
+    /**
+     * @param answer What to answer with once delayed (defaults to {@link Mockito#RETURNS_DEFAULTS})
+     */
+    @SuppressWarnings("unchecked")
+    public <A> DelayingAnswer<A> thenAnswer(Answer<A> answer) {
+        DelayingAnswer<A> self = (DelayingAnswer<A>) this;
+        self.answer = answer;
+        return self;
+    }
+
+    /**
+     * @param jitter Vary each delay by up to this fraction of it either way, e.g. 0.1 for +/-10%
+     */
+    public DelayingAnswer<T> withJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1 but was " + jitter);
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * @param errorRate The fraction of invocations (0 to 1) that throw an error after their delay instead of answering
+     * @param errorFactory Creates the error thrown by each failing invocation, a new one each time as failing
+     * invocations can run on many threads at once
+     */
+    public DelayingAnswer<T> failingAtRate(double errorRate, Callable<? extends Throwable> errorFactory) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1 but was " + errorRate);
+        }
+        this.errorRate = errorRate;
+        this.errorFactory = errorFactory;
+        this.errorType = null;
+        return this;
+    }
+
+    /**
+     * @param errorRate The fraction of invocations (0 to 1) that throw an error after their delay instead of answering
+     * @param errorType The type of the error thrown by each failing invocation, created with its no argument constructor
+     */
+    public DelayingAnswer<T> failingAtRate(double errorRate, final Class<? extends Throwable> errorType) {
+        failingAtRate(errorRate, new Callable<Throwable>() {
+            @Override
+            public Throwable call() throws Exception {
+                return errorType.getDeclaredConstructor().newInstance();
+            }
+        });
+        this.errorType = errorType;
+        return this;
+    }
+
+    /**
+     * Sample delays and errors from a seeded random so that runs are repeatable (when invoked from a single thread)
+     */
+    public DelayingAnswer<T> withSeed(long seed) {
+        this.random = new Random(seed);
+        return this;
+    }
+
+    @Override
+    public T answer(InvocationOnMock invocation) throws Throwable {
+        if (errorType != null) {
+            checkThrowable(errorType, invocation.getMethod());
+        }
+        Random random = this.random != null ? this.random : ThreadLocalRandom.current();
+        long delayNanos = latency.nextDelayNanos(random);
+        if (jitter > 0) {
+            delayNanos += (long) (delayNanos * jitter * (2 * random.nextDouble() - 1));
+        }
+        park(delayNanos);
+        if (errorFactory != null && random.nextDouble() < errorRate) {
+            Throwable error = errorFactory.call();
+            checkThrowable(error.getClass(), invocation.getMethod());
+            throw error;
+        }
+        return answer.answer(invocation);
+    }
+
+    private static void checkThrowable(Class<? extends Throwable> type, Method method) {
+        if (RuntimeException.class.isAssignableFrom(type) || Error.class.isAssignableFrom(type)) {
+            return;
+        }
+        for (Class<?> declared : method.getExceptionTypes()) {
+            if (declared.isAssignableFrom(type)) {
+                return;
+            }
+        }
+        throw new MockitoException("Checked exception is invalid for this method!\nInvalid: " + type.getName()
+                + "\nas " + method.getDeclaringClass().getSimpleName() + "." + method.getName() + " does not declare it");
+    }
+
+    private static void park(long delayNanos) {
+        long deadline = System.nanoTime() + delayNanos;
+        long remaining = delayNanos;
+        while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+}
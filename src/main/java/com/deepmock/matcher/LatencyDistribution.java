@@ -0,0 +1,102 @@
+package com.deepmock.matcher;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A distribution of response times to sample the delays of a {@link DelayingAnswer} from.
+ */
+public abstract class LatencyDistribution {
+
+    /**
+     * @return The next delay in nanoseconds
+     */
+    public abstract long nextDelayNanos(Random random);
+
+    /**
+     * Always the same delay
+     */
+    public static LatencyDistribution fixed(long delay, TimeUnit unit) {
+        final long delayNanos = unit.toNanos(delay);
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayNanos(Random random) {
+                return delayNanos;
+            }
+        };
+    }
+
+    /**
+     * A delay uniformly distributed between min (inclusive) and max (exclusive)
+     */
+    public static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+        if (max < min) {
+            throw new IllegalArgumentException("Max delay " + max + " is less than min delay " + min);
+        }
+        final long minNanos = unit.toNanos(min);
+        final long rangeNanos = unit.toNanos(max) - minNanos;
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayNanos(Random random) {
+                return minNanos + (long) (random.nextDouble() * rangeNanos);
+            }
+        };
+    }
+
+    /**
+     * A log-normal distribution, the usual shape of service response times (a bulk around the median and a long tail),
+     * given by its median and 99th percentile
+     */
+    public static LatencyDistribution logNormal(long median, long p99, TimeUnit unit) {
+        if (median <= 0 || p99 < median) {
+            throw new IllegalArgumentException("Median " + median + " must be positive and no more than p99 " + p99);
+        }
+        final double mu = Math.log(unit.toNanos(median));
+        final double sigma = (Math.log(unit.toNanos(p99)) - mu) / 2.326; // z score of the 99th percentile
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayNanos(Random random) {
+                return (long) Math.exp(mu + sigma * random.nextGaussian());
+            }
+        };
+    }
+
+    /**
+     * Replays the latencies recorded at the given percentiles (e.g. exported from a production latency histogram),
+     * interpolating linearly between them.
+     * @param percentiles Ascending percentiles in the range 0 to 100, e.g. {50, 90, 99, 99.9, 100}
+     * @param latencies The latency at each of the percentiles
+     */
+    public static LatencyDistribution percentiles(double[] percentiles, long[] latencies, TimeUnit unit) {
+        if (percentiles.length == 0 || percentiles.length != latencies.length) {
+            throw new IllegalArgumentException("Must give one latency for each of at least one percentile");
+        }
+        final double[] quantiles = new double[percentiles.length + 1];
+        final long[] latencyNanos = new long[latencies.length + 1];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (percentiles[i] < 0 || percentiles[i] > 100 || (i > 0 && percentiles[i] <= percentiles[i - 1])) {
+                throw new IllegalArgumentException("Percentiles must be ascending and between 0 and 100: " + Arrays.toString(percentiles));
+            }
+            quantiles[i + 1] = percentiles[i] / 100;
+            latencyNanos[i + 1] = unit.toNanos(latencies[i]);
+        }
+        latencyNanos[0] = latencyNanos[1]; // below the lowest percentile replay its latency
+        return new LatencyDistribution() {
+            @Override
+            public long nextDelayNanos(Random random) {
+                double quantile = random.nextDouble();
+                int i = Arrays.binarySearch(quantiles, quantile);
+                if (i >= 0) {
+                    return latencyNanos[i];
+                }
+                int upper = -i - 1;
+                if (upper == quantiles.length) {
+                    return latencyNanos[quantiles.length - 1];
+                }
+                double fraction = (quantile - quantiles[upper - 1]) / (quantiles[upper] - quantiles[upper - 1]);
+                return latencyNanos[upper - 1] + (long) (fraction * (latencyNanos[upper] - latencyNanos[upper - 1]));
+            }
+        };
+    }
+}
@@ -0,0 +1,179 @@
+package com.deepmock.matcher;
+
+import org.hamcrest.Description;
+import org.hamcrest.DiagnosingMatcher;
+import org.hamcrest.Matcher;
+
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Parallel version of {@link IsIterableWithAll} for very large iterables (or streams) and expensive element matchers.
+ *
+ * The source's {@link Spliterator} is split (with {@link Spliterator#trySplit()}, so without copying the elements of
+ * e.g. a list) into parts of at most the batch size, which are matched on the common fork join pool.  As soon as an
+ * element fails, the parts after it are stopped, but every element before it is still matched, so the mismatch
+ * reported is always that of the lowest failing index.  The element matcher must be thread safe (most hamcrest
+ * matchers are).
+ *
+ * The result of the last match is remembered to describe its mismatch without matching again, and a {@link Stream},
+ * which can only be consumed once, is never matched again.
+ */
+public class ParallelIsIterableWithAll<T> extends DiagnosingMatcher<Object> {
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private final Matcher<? super T> elemMatcher;
+    private final int batchSize;
+    private volatile LastMatch lastMatch;
+
+    public static <T> ParallelIsIterableWithAll<T> allInParallel(Matcher<? super T> elemMatcher) {
+        return new ParallelIsIterableWithAll<T>(elemMatcher);
+    }
+
+    public ParallelIsIterableWithAll(Matcher<? super T> elemMatcher) {
+        this(elemMatcher, DEFAULT_BATCH_SIZE);
+    }
+
+    public ParallelIsIterableWithAll(Matcher<? super T> elemMatcher, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize);
+        }
+        this.elemMatcher = elemMatcher;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    protected boolean matches(Object item, Description mismatchDescription) {
+        if (!(item instanceof Iterable) && !(item instanceof Stream)) {
+            mismatchDescription.appendText("was neither an Iterable nor a Stream but ").appendValue(item);
+            return false;
+        }
+        LastMatch last = lastMatch;
+        Failure failure;
+        // describing a mismatch follows matching the same item, but an iterable matched again may have changed since
+        if (last != null && last.item == item && (item instanceof Stream || mismatchDescription != Description.NONE)) {
+            failure = last.failure;
+        } else {
+            Spliterator<?> spliterator = item instanceof Iterable ? ((Iterable<?>) item).spliterator() : ((Stream<?>) item).spliterator();
+            failure = ForkJoinPool.commonPool().invoke(new MatchTask(spliterator)).failure;
+            lastMatch = new LastMatch(item, failure);
+        }
+        if (failure != null) {
+            mismatchDescription.appendText("item " + failure.index + ": ");
+            elemMatcher.describeMismatch(failure.element, mismatchDescription);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void describeTo(Description description) {
+        description.appendText("iterable with all elements [")
+                .appendDescriptionOf(elemMatcher)
+                .appendText("]");
+    }
+
+    private static final class LastMatch {
+        private final Object item;
+        private final Failure failure;
+
+        private LastMatch(Object item, Failure failure) {
+            this.item = item;
+            this.failure = failure;
+        }
+    }
+
+    private static final class Failure {
+        private final long index;
+        private final Object element;
+
+        private Failure(long index, Object element) {
+            this.index = index;
+            this.element = element;
+        }
+    }
+
+    /**
+     * The outcome of matching a part of the source: the number of elements it holds (when none failed) and its first
+     * failure, indexed from the start of the part
+     */
+    private static final class Result {
+        private final long count;
+        private final Failure failure;
+
+        private Result(long count, Failure failure) {
+            this.count = count;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Matches a part of the source, splitting it in two (matching the first half itself while the second is forked)
+     * until it holds at most a batch of elements.  Once the first half has failed, the second half is stopped.
+     */
+    private final class MatchTask extends RecursiveTask<Result> implements Consumer<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final Spliterator<?> spliterator;
+        private volatile boolean stopped;
+        private volatile MatchTask first;
+        private volatile MatchTask second;
+        private long count;
+        private Failure failure;
+
+        private MatchTask(Spliterator<?> spliterator) {
+            this.spliterator = spliterator;
+        }
+
+        @Override
+        protected Result compute() {
+            Spliterator<?> prefix = spliterator.estimateSize() > batchSize ? spliterator.trySplit() : null;
+            if (prefix == null) {
+                while (failure == null && !stopped && spliterator.tryAdvance(this)) {
+                    // match the next element
+                }
+                return new Result(count, failure);
+            }
+            first = new MatchTask(prefix);
+            second = new MatchTask(spliterator);
+            if (stopped) {
+                stop(); // stopped while splitting
+            }
+            second.fork();
+            Result firstResult = first.invoke();
+            if (firstResult.failure != null) {
+                second.stop();
+                second.join();
+                return firstResult;
+            }
+            Result secondResult = second.join();
+            Failure secondFailure = secondResult.failure == null ? null
+                    : new Failure(firstResult.count + secondResult.failure.index, secondResult.failure.element);
+            return new Result(firstResult.count + secondResult.count, secondFailure);
+        }
+
+        @Override
+        public void accept(Object element) {
+            if (elemMatcher.matches(element)) {
+                count++;
+            } else {
+                failure = new Failure(count, element);
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            MatchTask firstTask = first;
+            MatchTask secondTask = second;
+            if (firstTask != null) {
+                firstTask.stop();
+            }
+            if (secondTask != null) {
+                secondTask.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.deepmock.matcher;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.SimpleTypeConverter;
+import org.springframework.util.ClassUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers from a table of rows, each mapping the arguments of an invocation to its result.  The rows are indexed by
+ * the hash of their arguments, so loading and looking up thousands of rows is far quicker than thousands of
+ * <code>when(...).thenReturn(...)</code> stubbings, which Mockito matches one by one.  Use it as the default answer of
+ * a lookup mock:
+ * <pre>
+ *   &#64;Before
+ *   public void before() throws IOException {
+ *       prices = TableAnswer.fromCsv(new FileReader("src/test/resources/prices.csv")).orElse(new ThrowsException(new UnknownProductException()));
+ *       priceLookup = mock(PriceLookup.class, prices);
+ *   }
+ * </pre>
+ * Arguments are compared with equals, so a table suits a mock with one lookup method.  Rows loaded from CSV are
+ * matched against the String values of the arguments, and their result is converted to the method's return type.
+ * Invocations matching no row are answered by the fallback answer ({@link Mockito#RETURNS_DEFAULTS} by default).
+ *
+ * {@link com.deepmock.mockito.Verify#verifyExpectations(Object...)} fails for a mock answered by a table with unused
+ * rows, as for unused stubbings.
+ */
+public class TableAnswer implements Answer<Object> {
+    private static final int MAX_REPORTED_ROWS = 10;
+
+    private final Map<Key, Row> rows = new HashMap<Key, Row>();
+    private final boolean stringArguments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private Answer<?> fallback = Mockito.RETURNS_DEFAULTS;
+
+    /**
+     * Generates the rows of a table
+     */
+    public interface RowGenerator {
+        Object[] getArguments(int row);
+
+        Object getResult(int row);
+    }
+
+    public TableAnswer() {
+        this(false);
+    }
+
+    private TableAnswer(boolean stringArguments) {
+        this.stringArguments = stringArguments;
+    }
+
+    /**
+     * @param rows The result of each single argument, or each argument list (for methods with several arguments)
+     */
+    public static TableAnswer fromMap(Map<?, ?> rows) {
+        TableAnswer table = new TableAnswer();
+        for (Map.Entry<?, ?> row : rows.entrySet()) {
+            Object[] arguments = row.getKey() instanceof List ? ((List<?>) row.getKey()).toArray() : new Object[] {row.getKey()};
+            table.row(row.getValue(), arguments);
+        }
+        return table;
+    }
+
+    /**
+     * Load comma separated rows of arguments followed by the result.  Values are trimmed and can not be quoted; blank
+     * lines and lines starting with # are skipped.
+     */
+    public static TableAnswer fromCsv(Reader csv) throws IOException {
+        TableAnswer table = new TableAnswer(true);
+        BufferedReader reader = new BufferedReader(csv);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0 || line.trim().startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split(",", -1);
+                Object[] arguments = new Object[values.length - 1];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = values[i].trim();
+                }
+                table.row(values[values.length - 1].trim(), arguments);
+            }
+        } finally {
+            reader.close();
+        }
+        return table;
+    }
+
+    public static TableAnswer fromGenerator(int rows, RowGenerator generator) {
+        TableAnswer table = new TableAnswer();
+        for (int i = 0; i < rows; i++) {
+            table.row(generator.getResult(i), generator.getArguments(i));
+        }
+        return table;
+    }
+
+    /**
+     * Add (or replace) a row
+     */
+    public TableAnswer row(Object result, Object... arguments) {
+        Key key = new Key(arguments);
+        rows.put(key, new Row(key, result));
+        return this;
+    }
+
+    /**
+     * @param fallback The answer to invocations matching no row
+     */
+    public TableAnswer orElse(Answer<?> fallback) {
+        this.fallback = fallback;
+        return this;
+    }
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+        Row row = rows.get(new Key(stringArguments ? toStrings(invocation.getArguments()) : invocation.getArguments()));
+        if (row == null) {
+            misses.incrementAndGet();
+            return fallback.answer(invocation);
+        }
+        hits.incrementAndGet();
+        row.used = true;
+        return stringArguments ? row.getConvertedResult(invocation.getMethod().getReturnType()) : row.result;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @return The arguments of the rows no invocation has matched
+     */
+    public List<List<Object>> getUnusedRows() {
+        List<List<Object>> unused = new ArrayList<List<Object>>();
+        for (Row row : rows.values()) {
+            if (!row.used) {
+                unused.add(Arrays.asList(row.key.arguments));
+            }
+        }
+        return unused;
+    }
+
+    /**
+     * @return A description of the unused rows, or null if every row has been used
+     */
+    public String describeUnusedRows() {
+        List<List<Object>> unused = getUnusedRows();
+        if (unused.isEmpty()) {
+            return null;
+        }
+        StringBuilder description = new StringBuilder(unused.size() + " of " + rows.size() + " table rows never used ("
+                + hits + " hits, " + misses + " misses):");
+        for (List<Object> arguments : unused.subList(0, Math.min(MAX_REPORTED_ROWS, unused.size()))) {
+            description.append("\n  ").append(arguments);
+        }
+        if (unused.size() > MAX_REPORTED_ROWS) {
+            description.append("\n  ...");
+        }
+        return description.toString();
+    }
+
+    private static Object[] toStrings(Object[] arguments) {
+        Object[] strings = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            strings[i] = arguments[i] == null ? "" : String.valueOf(arguments[i]);
+        }
+        return strings;
+    }
+
+    private static final class Key {
+        private final Object[] arguments;
+        private final int hashCode;
+
+        private Key(Object[] arguments) {
+            this.arguments = arguments;
+            this.hashCode = Arrays.deepHashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hashCode == ((Key) o).hashCode && Arrays.deepEquals(arguments, ((Key) o).arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Row {
+        private final Key key;
+        private final Object result;
+        private volatile boolean used;
+        private volatile Object convertedResult;
+
+        private Row(Key key, Object result) {
+            this.key = key;
+            this.result = result;
+        }
+
+        private Object getConvertedResult(Class<?> type) {
+            Object converted = convertedResult;
+            // a primitive result is converted to (and cached as) its wrapper
+            if (converted == null || !ClassUtils.resolvePrimitiveIfNecessary(type).isInstance(converted)) {
+                converted = new SimpleTypeConverter().convertIfNecessary(result, type);
+                convertedResult = converted;
+            }
+            return converted;
+        }
+    }
+}
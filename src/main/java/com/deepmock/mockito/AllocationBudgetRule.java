@@ -0,0 +1,258 @@
+package com.deepmock.mockito;
+
+import com.deepmock.TestClassModel;
+import org.junit.Assume;
+import org.junit.rules.MethodRule;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+import org.mockito.internal.invocation.Invocation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Use this rule to fail a test when the subject allocates more bytes, or uses more CPU time, per operation than its
+ * budget.  Allocation and CPU time are measured for the test thread with the counters of
+ * {@link com.sun.management.ThreadMXBean}, excluding the time and allocation spent inside invocations of the test's
+ * mocks (i.e. their answers), so that only the subject's own work is measured.
+ * <pre>
+ *   &#64;Rule
+ *   public AllocationBudgetRule allocationBudgetRule = new AllocationBudgetRule().maxBytesPerOperation(512);
+ *
+ *   &#64;Test
+ *   public void pricesWithoutGarbage() throws Exception {
+ *       allocationBudgetRule.measure(10000, new AllocationBudgetRule.Block() {
+ *           public void run(long operations) throws Exception {
+ *               for (long i = 0; i &lt; operations; i++) {
+ *                   subject.price(order);
+ *               }
+ *           }
+ *       });
+ *   }
+ * </pre>
+ * Alternatively {@link #measureTestBody(long)} measures the whole test (including Before and After methods).  Work the
+ * subject hands to other threads is not measured.  Note that Mockito records each invocation of a mock before it is
+ * handled, so that bookkeeping (typically a few KB per invocation) is counted; set budgets from a known good run.
+ * On a JVM that cannot measure the allocation (or CPU time) of a thread, a test with a budget for it is skipped.
+ */
+public class AllocationBudgetRule implements MethodRule {
+    private long maxBytesPerOperation = Long.MAX_VALUE;
+    private long maxCpuNanosPerOperation = Long.MAX_VALUE;
+    private long testBodyOperations;
+    private Object testInstance;
+
+    /**
+     * A block of code performing a number of operations on the subject
+     */
+    public interface Block {
+        void run(long operations) throws Exception;
+    }
+
+    public AllocationBudgetRule maxBytesPerOperation(long maxBytesPerOperation) {
+        this.maxBytesPerOperation = maxBytesPerOperation;
+        return this;
+    }
+
+    public AllocationBudgetRule maxCpuTimePerOperation(long cpuTime, TimeUnit unit) {
+        this.maxCpuNanosPerOperation = unit.toNanos(cpuTime);
+        return this;
+    }
+
+    /**
+     * Measure each test as a whole rather than the blocks passed to {@link #measure(long, Block)}.  Only invocations
+     * of the mocks already created when the test starts are excluded.
+     * @param operations The number of operations each test performs
+     */
+    public AllocationBudgetRule measureTestBody(long operations) {
+        this.testBodyOperations = operations;
+        return this;
+    }
+
+    @Override
+    public Statement apply(final Statement base, FrameworkMethod method, final Object target) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                testInstance = target;
+                try {
+                    if (testBodyOperations > 0) {
+                        assumeMeasurable();
+                        Meter meter = new Meter(findMocks());
+                        Measurement measurement;
+                        try {
+                            base.evaluate();
+                        } finally {
+                            measurement = meter.stop(testBodyOperations);
+                        }
+                        check(measurement);
+                    } else {
+                        base.evaluate();
+                    }
+                } finally {
+                    testInstance = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Run the block, measuring it and checking it against the budgets
+     * @throws AssertionError if a budget is exceeded
+     */
+    public Measurement measure(long operations, Block block) throws Exception {
+        if (operations < 1) {
+            throw new IllegalArgumentException("Must measure at least one operation");
+        }
+        assumeMeasurable();
+        Meter meter = new Meter(findMocks());
+        Measurement measurement;
+        try {
+            block.run(operations);
+        } finally {
+            // always remove the meter's listeners, they would otherwise outlive the test on pooled mocks
+            measurement = meter.stop(operations);
+        }
+        check(measurement);
+        return measurement;
+    }
+
+    private Collection<Object> findMocks() {
+        if (testInstance == null) {
+            throw new IllegalStateException("Rule is not applied to the running test, declare it as a Rule");
+        }
+        return TestClassModel.getValues(testInstance, TestClassModel.forClass(testInstance.getClass()).getMockFields());
+    }
+
+    /**
+     * Skip the test if a budget is set for something this JVM cannot measure, rather than let it pass unmeasured
+     */
+    private void assumeMeasurable() {
+        com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+        Assume.assumeTrue("This JVM can not measure thread allocation, skipping the allocation budget",
+                maxBytesPerOperation == Long.MAX_VALUE || measuresBytes(threadMXBean));
+        Assume.assumeTrue("This JVM can not measure thread CPU time, skipping the CPU time budget",
+                maxCpuNanosPerOperation == Long.MAX_VALUE || measuresCpuTime(threadMXBean));
+    }
+
+    private void check(Measurement measurement) {
+        StringBuilder breaches = new StringBuilder();
+        if (measurement.getBytesPerOperation() > maxBytesPerOperation) {
+            breaches.append(" allocated ").append(measurement.getBytesPerOperation()).append(" bytes per operation, budget ")
+                    .append(maxBytesPerOperation).append(';');
+        }
+        if (measurement.getCpuNanosPerOperation() > maxCpuNanosPerOperation) {
+            breaches.append(" used ").append(measurement.getCpuNanosPerOperation()).append("ns CPU per operation, budget ")
+                    .append(maxCpuNanosPerOperation).append("ns;");
+        }
+        if (breaches.length() > 0) {
+            throw new AssertionError("Budget exceeded:" + breaches + " " + measurement);
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            throw new IllegalStateException("This JVM does not support measuring thread allocation");
+        }
+        com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (sunThreadMXBean.isThreadAllocatedMemorySupported() && !sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+            sunThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        if (sunThreadMXBean.isCurrentThreadCpuTimeSupported() && !sunThreadMXBean.isThreadCpuTimeEnabled()) {
+            sunThreadMXBean.setThreadCpuTimeEnabled(true);
+        }
+        return sunThreadMXBean;
+    }
+
+    private static boolean measuresBytes(com.sun.management.ThreadMXBean threadMXBean) {
+        return threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled();
+    }
+
+    private static boolean measuresCpuTime(com.sun.management.ThreadMXBean threadMXBean) {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+    }
+
+    /**
+     * What a measured block allocated and the CPU time it used, excluding invocations of mocks.  Either is -1 if this
+     * JVM cannot measure it.
+     */
+    public static final class Measurement {
+        private final long operations;
+        private final long bytes;
+        private final long cpuNanos;
+
+        private Measurement(long operations, long bytes, long cpuNanos) {
+            this.operations = operations;
+            this.bytes = bytes;
+            this.cpuNanos = cpuNanos;
+        }
+
+        public long getBytesPerOperation() {
+            return bytes < 0 ? -1 : bytes / operations;
+        }
+
+        public long getCpuNanosPerOperation() {
+            return cpuNanos < 0 ? -1 : cpuNanos / operations;
+        }
+
+        @Override
+        public String toString() {
+            return operations + " operations allocated " + bytes + " bytes (" + getBytesPerOperation() + " per operation) and used "
+                    + TimeUnit.NANOSECONDS.toMicros(cpuNanos) + "us CPU (" + getCpuNanosPerOperation() + "ns per operation)";
+        }
+    }
+
+    /**
+     * Reads the test thread's counters, subtracting what is spent inside (outermost) invocations of the mocks
+     */
+    private static final class Meter implements InvocationListener {
+        private final com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+        private final boolean measuresBytes = measuresBytes(threadMXBean);
+        private final boolean measuresCpuTime = measuresCpuTime(threadMXBean);
+        private final Thread thread = Thread.currentThread();
+        private final Collection<Object> mocks;
+        private final long startBytes;
+        private final long startCpuNanos;
+        private int depth;
+        private long invocationStartBytes;
+        private long invocationStartCpuNanos;
+        private long excludedBytes;
+        private long excludedCpuNanos;
+
+        private Meter(Collection<Object> mocks) {
+            this.mocks = mocks;
+            for (Object mock : mocks) {
+                MockInvocationListeners.addListener(mock, this);
+            }
+            startCpuNanos = threadMXBean.getCurrentThreadCpuTime();
+            startBytes = threadMXBean.getThreadAllocatedBytes(thread.getId());
+        }
+
+        Measurement stop(long operations) {
+            long bytes = threadMXBean.getThreadAllocatedBytes(thread.getId()) - startBytes;
+            long cpuNanos = threadMXBean.getCurrentThreadCpuTime() - startCpuNanos;
+            for (Object mock : mocks) {
+                MockInvocationListeners.removeListener(mock, this);
+            }
+            return new Measurement(operations, measuresBytes ? Math.max(0, bytes - excludedBytes) : -1,
+                    measuresCpuTime ? Math.max(0, cpuNanos - excludedCpuNanos) : -1);
+        }
+
+        @Override
+        public void beforeInvocation(Invocation invocation) {
+            if (Thread.currentThread() == thread && depth++ == 0) {
+                invocationStartBytes = threadMXBean.getThreadAllocatedBytes(thread.getId());
+                invocationStartCpuNanos = threadMXBean.getCurrentThreadCpuTime();
+            }
+        }
+
+        @Override
+        public void afterInvocation(Invocation invocation) {
+            if (Thread.currentThread() == thread && --depth == 0) {
+                excludedCpuNanos += threadMXBean.getCurrentThreadCpuTime() - invocationStartCpuNanos;
+                excludedBytes += threadMXBean.getThreadAllocatedBytes(thread.getId()) - invocationStartBytes;
+            }
+        }
+    }
+}
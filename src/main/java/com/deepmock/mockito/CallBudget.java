@@ -0,0 +1,31 @@
+package com.deepmock.mockito;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+
+/**
+ * The maximum number of invocations a mock may receive during a test, to catch a subject calling a collaborator once
+ * per item rather than once per batch.  Checked by {@link CallBudgetRule} (or {@link Verify#verifyCallBudgets(Object)}).
+ * <pre>
+ *   &#64;Mock
+ *   &#64;CallBudget(max = 1, perMethod = true)
+ *   ItemDao itemDao;
+ * </pre>
+ */
+@Target({ FIELD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CallBudget {
+
+    /**
+     * The maximum number of invocations
+     */
+    int max();
+
+    /**
+     * true to apply the budget to each method of the mock separately, rather than to all its invocations
+     */
+    boolean perMethod() default false;
+}
@@ -0,0 +1,24 @@
+package com.deepmock.mockito;
+
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+/**
+ * Use this test rule to check the {@link CallBudget}s of the annotated mocks of your test instance after each test
+ * <pre>
+ *   &#64;Rule
+ *   public CallBudgetRule callBudgetRule = new CallBudgetRule(this);
+ * </pre>
+ */
+public class CallBudgetRule extends TestWatcher {
+    private Object testInstance;
+
+    public CallBudgetRule(Object testInstance) {
+        this.testInstance = testInstance;
+    }
+
+    @Override
+    protected void succeeded(Description description) {
+        Verify.verifyCallBudgets(testInstance);
+    }
+}
@@ -0,0 +1,138 @@
+package com.deepmock.mockito;
+
+import org.mockito.internal.invocation.Invocation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Counts the invocations of a set of mocks that are currently in progress, so that a test driving the mocks from many
+ * threads can wait for them to quiesce, and gates new invocations so that none can start while the test swaps fields.
+ *
+ * Started and completed invocations are counted separately with striped counters, so counting is cheap under
+ * contention.  As both counts only ever grow, reading the completed count before the started count can overestimate
+ * but never underestimate the invocations in flight.  Invocations nested in an invocation of a tracked mock on the same
+ * thread (e.g. from an answer) are part of it and are neither counted nor gated.
+ *
+ * While the gate is {@link #close(long) closed}, a new invocation waits for it to be {@link #open() opened} again.  An
+ * invocation counts itself as started before checking the gate, and backs out if it is closed, while closing the gate
+ * happens before reading the counts: either the invocation sees the gate closed or the closing thread sees it in flight.
+ */
+public final class InFlightInvocations implements InvocationListener {
+    private static final long POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final List<Object> mocks = new ArrayList<Object>();
+    private final Object gate = new Object();
+    private volatile boolean closed;
+    private final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * Start counting the invocations of the mocks
+     */
+    public synchronized void track(Collection<?> mocks) {
+        for (Object mock : mocks) {
+            MockInvocationListeners.addListener(mock, this);
+            this.mocks.add(mock);
+        }
+    }
+
+    /**
+     * Stop counting the invocations of all the tracked mocks
+     */
+    public synchronized void untrack() {
+        for (Object mock : mocks) {
+            MockInvocationListeners.removeListener(mock, this);
+        }
+        mocks.clear();
+    }
+
+    public long getInFlight() {
+        long completedCount = completed.sum();
+        return started.sum() - completedCount;
+    }
+
+    /**
+     * Wait until no invocation of the tracked mocks is in progress
+     * @return false if invocations were still in progress when the timeout elapsed
+     */
+    public boolean awaitQuiescence(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (getInFlight() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop new invocations of the tracked mocks from starting, then wait until none is in progress.  The gate stays
+     * closed, whatever the outcome, until {@link #open()} is called.
+     * @return false if invocations were still in progress when the timeout elapsed
+     */
+    public boolean close(long timeoutMillis) throws InterruptedException {
+        closed = true;
+        return awaitQuiescence(timeoutMillis);
+    }
+
+    /**
+     * Let the invocations waiting for the gate, and any new one, proceed
+     */
+    public void open() {
+        synchronized (gate) {
+            closed = false;
+            gate.notifyAll();
+        }
+    }
+
+    @Override
+    public void beforeInvocation(Invocation invocation) {
+        if (depth.get()[0]++ > 0) {
+            return;
+        }
+        started.increment();
+        while (closed) {
+            completed.increment();
+            awaitOpen();
+            started.increment();
+        }
+    }
+
+    @Override
+    public void afterInvocation(Invocation invocation) {
+        if (--depth.get()[0] == 0) {
+            completed.increment();
+        }
+    }
+
+    private void awaitOpen() {
+        boolean interrupted = false;
+        synchronized (gate) {
+            while (closed) {
+                try {
+                    gate.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
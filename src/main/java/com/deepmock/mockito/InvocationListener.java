@@ -0,0 +1,20 @@
+package com.deepmock.mockito;
+
+import org.mockito.internal.invocation.Invocation;
+
+/**
+ * Notified of each invocation of a mock it has been registered on, on the invoking thread.
+ * @see MockInvocationListeners
+ */
+public interface InvocationListener {
+
+    /**
+     * Called before the mock handles the invocation (i.e. before any stubbed answer runs)
+     */
+    void beforeInvocation(Invocation invocation);
+
+    /**
+     * Called once the mock has handled the invocation, whether it returned or threw
+     */
+    void afterInvocation(Invocation invocation);
+}
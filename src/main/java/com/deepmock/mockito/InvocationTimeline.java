@@ -0,0 +1,206 @@
+package com.deepmock.mockito;
+
+import org.mockito.internal.invocation.Invocation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records the invocations of selected mocks on a timeline (thread, start and end time, method and a summary of the
+ * arguments) and writes them in the Chrome trace event format, to be opened in chrome://tracing or
+ * https://ui.perfetto.dev to see the parallelism, serialization points and slow collaborator calls of a subject.
+ * <pre>
+ *   InvocationTimeline timeline = new InvocationTimeline();
+ *   timeline.record(daoMock, remoteClientMock);
+ *   ...
+ *   timeline.stop();
+ *   timeline.writeChromeTrace(new File("target/timeline.json"));
+ * </pre>
+ * Each thread records into its own buffer, so recording takes no locks.
+ * @see InvocationTimelineRule
+ */
+public final class InvocationTimeline implements InvocationListener {
+    private static final int MAX_ARGUMENT_LENGTH = 40;
+
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<ThreadBuffer> buffers = new ConcurrentLinkedQueue<ThreadBuffer>();
+    private final List<Object> mocks = new ArrayList<Object>();
+    private final ThreadLocal<ThreadBuffer> buffer = new ThreadLocal<ThreadBuffer>() {
+        @Override
+        protected ThreadBuffer initialValue() {
+            ThreadBuffer threadBuffer = new ThreadBuffer(Thread.currentThread());
+            buffers.add(threadBuffer);
+            return threadBuffer;
+        }
+    };
+
+    /**
+     * Start recording the invocations of the mocks
+     */
+    public synchronized void record(Object... mocks) {
+        for (Object mock : mocks) {
+            MockInvocationListeners.addListener(mock, this);
+            this.mocks.add(mock);
+        }
+    }
+
+    /**
+     * Stop recording the invocations of all the mocks
+     */
+    public synchronized void stop() {
+        for (Object mock : mocks) {
+            MockInvocationListeners.removeListener(mock, this);
+        }
+        mocks.clear();
+    }
+
+    @Override
+    public void beforeInvocation(Invocation invocation) {
+        buffer.get().begin(System.nanoTime());
+    }
+
+    @Override
+    public void afterInvocation(Invocation invocation) {
+        long endNanos = System.nanoTime();
+        buffer.get().end(invocation.getMethod().getDeclaringClass().getSimpleName() + "." + invocation.getMethod().getName(),
+                summarise(invocation.getArguments()), endNanos);
+    }
+
+    /**
+     * @return The number of invocations recorded so far
+     */
+    public int size() {
+        int size = 0;
+        for (ThreadBuffer threadBuffer : buffers) {
+            size += threadBuffer.size;
+        }
+        return size;
+    }
+
+    public void writeChromeTrace(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writeChromeTrace(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write the invocations recorded so far as a JSON trace, each invocation as a complete event of its thread
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        writer.write("{\"traceEvents\":[");
+        boolean first = true;
+        for (ThreadBuffer threadBuffer : buffers) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+            writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + threadBuffer.threadId
+                    + ",\"args\":{\"name\":" + quote(threadBuffer.threadName) + "}}");
+            int size = threadBuffer.size; // entries up to size have been published by the recording thread
+            for (int i = 0; i < size; i++) {
+                writer.write(",\n{\"name\":" + quote(threadBuffer.names[i]) + ",\"cat\":\"mock\",\"ph\":\"X\",\"pid\":1,\"tid\":"
+                        + threadBuffer.threadId + ",\"ts\":" + micros(threadBuffer.starts[i] - startNanos)
+                        + ",\"dur\":" + micros(threadBuffer.ends[i] - threadBuffer.starts[i])
+                        + ",\"args\":{\"arguments\":" + quote(threadBuffer.arguments[i]) + "}}");
+            }
+        }
+        writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        writer.flush();
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000.0);
+    }
+
+    private static String summarise(Object[] arguments) {
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < arguments.length; i++) {
+            if (i > 0) {
+                summary.append(", ");
+            }
+            Object argument = arguments[i];
+            String value = argument instanceof Object[] ? Arrays.deepToString((Object[]) argument) : String.valueOf(argument);
+            summary.append(value.length() > MAX_ARGUMENT_LENGTH ? value.substring(0, MAX_ARGUMENT_LENGTH) + "..." : value);
+        }
+        return summary.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * The invocations of one thread, only ever written by that thread.  Nested invocations (e.g. from an answer) are
+     * tracked with a stack of start times.
+     */
+    private static final class ThreadBuffer {
+        private final long threadId;
+        private final String threadName;
+        private long[] starts = new long[64];
+        private long[] ends = new long[64];
+        private String[] names = new String[64];
+        private String[] arguments = new String[64];
+        private long[] startStack = new long[8];
+        private int depth;
+        private volatile int size;
+
+        private ThreadBuffer(Thread thread) {
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+        }
+
+        private void begin(long startNanos) {
+            if (depth == startStack.length) {
+                startStack = Arrays.copyOf(startStack, depth * 2);
+            }
+            startStack[depth++] = startNanos;
+        }
+
+        private void end(String name, String argumentSummary, long endNanos) {
+            if (depth == 0) {
+                return; // began before recording started
+            }
+            int index = size;
+            if (index == starts.length) {
+                grow();
+            }
+            starts[index] = startStack[--depth];
+            ends[index] = endNanos;
+            names[index] = name;
+            arguments[index] = argumentSummary;
+            size = index + 1;
+        }
+
+        private void grow() {
+            int capacity = starts.length * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            names = Arrays.copyOf(names, capacity);
+            arguments = Arrays.copyOf(arguments, capacity);
+        }
+    }
+}
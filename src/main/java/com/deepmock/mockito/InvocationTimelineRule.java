@@ -0,0 +1,62 @@
+package com.deepmock.mockito;
+
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the timeline of the invocations of the mocks selected with {@link #record(Object...)} at the end of each
+ * test, to <code>target/deepmock-timelines/&lt;test class&gt;.&lt;test method&gt;.json</code> by default.
+ * <pre>
+ *   &#64;Rule
+ *   public InvocationTimelineRule timelineRule = new InvocationTimelineRule();
+ *
+ *   &#64;Test
+ *   public void processesInParallel() {
+ *       timelineRule.record(daoMock, remoteClientMock);
+ *       ...
+ * </pre>
+ * @see InvocationTimeline
+ */
+public class InvocationTimelineRule extends TestWatcher {
+    private final File directory;
+    private InvocationTimeline timeline;
+
+    public InvocationTimelineRule() {
+        this(new File("target/deepmock-timelines"));
+    }
+
+    /**
+     * @param directory The directory to write the timelines to
+     */
+    public InvocationTimelineRule(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Record the invocations of the mocks for the rest of the test
+     */
+    public synchronized void record(Object... mocks) {
+        if (timeline == null) {
+            timeline = new InvocationTimeline();
+        }
+        timeline.record(mocks);
+    }
+
+    @Override
+    protected synchronized void finished(Description description) {
+        if (timeline == null) {
+            return;
+        }
+        timeline.stop();
+        try {
+            timeline.writeChromeTrace(new File(directory, description.getClassName() + "." + description.getMethodName() + ".json"));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write invocation timeline", e);
+        } finally {
+            timeline = null;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.deepmock.mockito;
+
+import org.mockito.cglib.proxy.Factory;
+import org.mockito.internal.MockHandlerInterface;
+import org.mockito.internal.MockitoInvocationHandler;
+import org.mockito.internal.creation.MethodInterceptorFilter;
+import org.mockito.internal.creation.MockSettingsImpl;
+import org.mockito.internal.invocation.Invocation;
+import org.mockito.internal.stubbing.InvocationContainer;
+import org.mockito.internal.util.MockUtil;
+import org.mockito.stubbing.Answer;
+import org.mockito.stubbing.VoidMethodStubbable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registers {@link InvocationListener}s on Mockito mocks.  The mock's handler is wrapped by one that notifies the
+ * listeners around each invocation; the original handler is put back once the last listener is removed.
+ */
+public final class MockInvocationListeners {
+
+    public static void addListener(Object mock, InvocationListener listener) {
+        MockHandlerInterface<Object> handler = new MockUtil().getMockHandler(mock);
+        if (handler instanceof ListeningMockHandler) {
+            ((ListeningMockHandler)handler).listeners.add(listener);
+        } else {
+            ListeningMockHandler listeningHandler = new ListeningMockHandler(handler);
+            listeningHandler.listeners.add(listener);
+            setHandler(mock, listeningHandler, handler.getMockSettings());
+        }
+    }
+
+    public static void removeListener(Object mock, InvocationListener listener) {
+        MockHandlerInterface<Object> handler = new MockUtil().getMockHandler(mock);
+        if (handler instanceof ListeningMockHandler) {
+            ListeningMockHandler listeningHandler = (ListeningMockHandler)handler;
+            listeningHandler.listeners.remove(listener);
+            if (listeningHandler.listeners.isEmpty()) {
+                setHandler(mock, (MockitoInvocationHandler)listeningHandler.delegate, handler.getMockSettings());
+            }
+        }
+    }
+
+    /**
+     * @return The listeners registered on the mock
+     */
+    public static List<InvocationListener> getListeners(Object mock) {
+        MockHandlerInterface<Object> handler = new MockUtil().getMockHandler(mock);
+        return handler instanceof ListeningMockHandler ? ((ListeningMockHandler)handler).listeners : new CopyOnWriteArrayList<InvocationListener>();
+    }
+
+    private static void setHandler(Object mock, MockitoInvocationHandler handler, MockSettingsImpl settings) {
+        ((Factory)mock).setCallback(0, new MethodInterceptorFilter(handler, settings));
+    }
+
+    private static final class ListeningMockHandler implements MockitoInvocationHandler, MockHandlerInterface<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final CopyOnWriteArrayList<InvocationListener> listeners = new CopyOnWriteArrayList<InvocationListener>();
+        private final MockHandlerInterface<Object> delegate;
+
+        private ListeningMockHandler(MockHandlerInterface<Object> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object handle(Invocation invocation) throws Throwable {
+            // notify the same listeners after the invocation as before it, even if some are added or removed meanwhile
+            InvocationListener[] notified = listeners.toArray(new InvocationListener[0]);
+            for (InvocationListener listener : notified) {
+                listener.beforeInvocation(invocation);
+            }
+            try {
+                return ((MockitoInvocationHandler)delegate).handle(invocation);
+            } finally {
+                for (InvocationListener listener : notified) {
+                    listener.afterInvocation(invocation);
+                }
+            }
+        }
+
+        @Override
+        public MockSettingsImpl getMockSettings() {
+            return delegate.getMockSettings();
+        }
+
+        @Override
+        public void verifyNoMoreInteractions() {
+            delegate.verifyNoMoreInteractions();
+        }
+
+        @Override
+        public VoidMethodStubbable<Object> voidMethodStubbable(Object mock) {
+            return delegate.voidMethodStubbable(mock);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes") // signature imposed by MockHandlerInterface
+        public void setAnswersForStubbing(List<Answer> answers) {
+            delegate.setAnswersForStubbing(answers);
+        }
+
+        @Override
+        public InvocationContainer getInvocationContainer() {
+            return delegate.getInvocationContainer();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.deepmock.mockito;
+
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registers a {@link MockReplacingBeanPostProcessor} for the types activated by {@link MockReplacementProfilesResolver}.
+ * @see ReplaceWithMocks
+ */
+public class MockReplacementContextInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+    static final String POST_PROCESSOR_NAME = MockReplacingBeanPostProcessor.class.getName();
+
+    @Override
+    public void initialize(ConfigurableApplicationContext applicationContext) {
+        List<Class<?>> types = new ArrayList<Class<?>>();
+        for (String profile : applicationContext.getEnvironment().getActiveProfiles()) {
+            if (profile.startsWith(MockReplacementProfilesResolver.PROFILE_PREFIX)) {
+                String typeName = profile.substring(MockReplacementProfilesResolver.PROFILE_PREFIX.length());
+                types.add(ClassUtils.resolveClassName(typeName, applicationContext.getClassLoader()));
+            }
+        }
+        MockReplacingBeanPostProcessor postProcessor = new MockReplacingBeanPostProcessor(types);
+        applicationContext.getBeanFactory().registerSingleton(POST_PROCESSOR_NAME, postProcessor);
+        applicationContext.getBeanFactory().addBeanPostProcessor(postProcessor);
+    }
+}
@@ -0,0 +1,32 @@
+package com.deepmock.mockito;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.test.context.ActiveProfilesResolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Activates a marker profile for each type declared by {@link ReplaceWithMocks}.  Active profiles are part of the
+ * Spring test context cache key, so this makes contexts with the same mocked types shared and contexts with different
+ * ones distinct.  The profiles are read back by {@link MockReplacementContextInitializer}.
+ */
+public class MockReplacementProfilesResolver implements ActiveProfilesResolver {
+    static final String PROFILE_PREFIX = "deepmock.mock:";
+
+    @Override
+    public String[] resolve(Class<?> testClass) {
+        ReplaceWithMocks replaceWithMocks = AnnotationUtils.findAnnotation(testClass, ReplaceWithMocks.class);
+        if (replaceWithMocks == null) {
+            throw new IllegalArgumentException("Must annotate " + testClass.getName() + " with " + ReplaceWithMocks.class.getName());
+        }
+        List<String> profiles = new ArrayList<String>();
+        for (Class<?> type : replaceWithMocks.value()) {
+            profiles.add(PROFILE_PREFIX + type.getName());
+        }
+        Collections.sort(profiles);
+        Collections.addAll(profiles, replaceWithMocks.profiles());
+        return profiles.toArray(new String[profiles.size()]);
+    }
+}
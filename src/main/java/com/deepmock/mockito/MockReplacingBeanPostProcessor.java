@@ -0,0 +1,53 @@
+package com.deepmock.mockito;
+
+import org.mockito.Mockito;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Substitutes a Mockito mock for every bean whose class is assignable to one of the configured types.  The mock is
+ * created in place of instantiating the bean, so the real bean (and its own dependencies) are never created.
+ * @see ReplaceWithMocks
+ */
+public class MockReplacingBeanPostProcessor extends InstantiationAwareBeanPostProcessorAdapter {
+    private final List<Class<?>> types;
+    private final Map<String, Object> mocks = new ConcurrentHashMap<String, Object>();
+
+    public MockReplacingBeanPostProcessor(Collection<Class<?>> types) {
+        this.types = new ArrayList<Class<?>>(types);
+    }
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+        for (Class<?> type : types) {
+            if (type.isAssignableFrom(beanClass)) {
+                Object mock = Mockito.mock(beanClass);
+                mocks.put(beanName, mock);
+                return mock;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The mocks substituted so far keyed by bean name
+     */
+    public Map<String, Object> getMocks() {
+        return Collections.unmodifiableMap(mocks);
+    }
+
+    /**
+     * Reset the stubbings and recorded invocations of all the substituted mocks
+     */
+    public void reset() {
+        for (Object mock : mocks.values()) {
+            MockReset.reset(mock);
+        }
+    }
+}
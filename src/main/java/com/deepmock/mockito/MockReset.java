@@ -0,0 +1,60 @@
+package com.deepmock.mockito;
+
+import org.mockito.cglib.proxy.Factory;
+import org.mockito.internal.MockHandler;
+import org.mockito.internal.MockHandlerInterface;
+import org.mockito.internal.creation.MethodInterceptorFilter;
+import org.mockito.internal.creation.MockSettingsImpl;
+import org.mockito.internal.util.MockUtil;
+import org.mockito.internal.util.reflection.LenientCopyTool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resets mocks so that the same instances can be reused by another test.  Unlike Mockito#reset, the settings the mock
+ * was created with (default answer, name, spied instance) and any {@link InvocationListener}s are kept, so a spy remains
+ * a spy after it is reset.  Lazy {@link MockitoFactoryBean} handles may be passed in place of their mocks.
+ */
+public final class MockReset {
+
+    /**
+     * Clear the stubbings and recorded invocations of the supplied mocks.  A spy also has the state of the object it
+     * spies on copied back into it.  A lazy handle whose mock has not been created yet has nothing to reset.
+     */
+    public static void reset(Object... mocks) {
+        for (Object mock : mocks) {
+            Object unwrapped = MockitoFactoryBean.unwrapIfMaterialised(mock);
+            if (unwrapped != null) {
+                resetMock(unwrapped);
+            }
+        }
+    }
+
+    /**
+     * Reset a spy and make it spy on a new instance: the state of the new instance is copied into the spy, and will be
+     * again on every later reset.
+     */
+    public static void resetSpy(Object spy, Object newSpiedInstance) {
+        Object unwrapped = MockitoFactoryBean.unwrap(spy);
+        new MockUtil().getMockHandler(unwrapped).getMockSettings().spiedInstance(newSpiedInstance);
+        resetMock(unwrapped);
+    }
+
+    private static void resetMock(Object mock) {
+        List<InvocationListener> listeners = new ArrayList<InvocationListener>(MockInvocationListeners.getListeners(mock));
+        for (InvocationListener listener : listeners) {
+            MockInvocationListeners.removeListener(mock, listener);
+        }
+        MockHandlerInterface<Object> oldHandler = new MockUtil().getMockHandler(mock);
+        MockSettingsImpl settings = oldHandler.getMockSettings();
+        MockHandler<Object> newHandler = new MockHandler<Object>(oldHandler);
+        ((Factory)mock).setCallback(0, new MethodInterceptorFilter(newHandler, settings));
+        if (settings.getSpiedInstance() != null) {
+            new LenientCopyTool().copyToMock(settings.getSpiedInstance(), mock);
+        }
+        for (InvocationListener listener : listeners) {
+            MockInvocationListeners.addListener(mock, listener);
+        }
+    }
+}
@@ -1,19 +1,101 @@
 package com.deepmock.mockito;
 
 import org.mockito.Mockito;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.target.AbstractLazyCreationTargetSource;
 import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
 
-public class MockitoFactoryBean implements FactoryBean<Object> {
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Spring factory bean that exposes a Mockito mock of the configured type.
+ *
+ * By default the mock is created eagerly when the bean is first requested.  For contexts declaring many mocks, most of
+ * which a given test never touches, the bean can be made <code>lazy</code>: a lightweight proxy handle is returned
+ * instead and the mock is only created on the first invocation of the handle.  Setting <code>preGenerate</code> creates
+ * the mock (and with it the generated mock class) on a background thread as soon as the bean is initialised, so that
+ * class generation for all the mocks of a context happens in parallel and off the context refresh path.
+ *
+ * Mocks can be reset with {@link #reset()} (see {@link MockitoFactoryBeanResetListener}) so that a cached context can be
+ * shared by multiple test classes without stubbings leaking between them.
+ * <pre>
+ *   &lt;bean id="myDao" class="com.deepmock.mockito.MockitoFactoryBean"&gt;
+ *       &lt;property name="mockType" value="com.example.MyDao"/&gt;
+ *       &lt;property name="lazy" value="true"/&gt;
+ *       &lt;property name="preGenerate" value="true"/&gt;
+ *   &lt;/bean&gt;
+ * </pre>
+ * Note that a lazy handle is a proxy rather than the mock itself.  {@link Verify} and {@link MockReset} accept handles
+ * in place of their mocks, but to use one with Mockito directly (e.g. <code>Mockito.verify</code>) use {@link #getMock()}
+ * or {@link #unwrap(Object)}.
+ */
+public class MockitoFactoryBean implements FactoryBean<Object>, InitializingBean {
+
+    private static final ExecutorService MOCK_GENERATOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "deepmock-mock-generator");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
 
     private Class<?> clazz;
+    private boolean lazy;
+    private boolean preGenerate;
+    private Future<Object> generatedMock;
+    private volatile Object mock;
+    private Object handle;
 
     public void setMockType(Class<?> clazz) {
         this.clazz = clazz;
     }
 
+    /**
+     * @param lazy true to expose a proxy handle that only creates the mock on its first invocation
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * @param preGenerate true to create the mock in the background as soon as this factory bean is initialised
+     */
+    public void setPreGenerate(boolean preGenerate) {
+        this.preGenerate = preGenerate;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (preGenerate) {
+            generatedMock = MOCK_GENERATOR.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return Mockito.mock(clazz);
+                }
+            });
+        }
+    }
+
     @Override
     public Object getObject() throws Exception {
-        return Mockito.mock(clazz);
+        if (!lazy) {
+            return getMock();
+        }
+        synchronized (this) {
+            if (handle == null) {
+                handle = createLazyHandle();
+            }
+            return handle;
+        }
     }
 
     @Override
@@ -26,4 +108,96 @@ public class MockitoFactoryBean implements FactoryBean<Object> {
         return true;
     }
 
+    /**
+     * @return The underlying mock, creating it if it has not yet been materialised
+     */
+    public Object getMock() throws Exception {
+        if (mock == null) {
+            synchronized (this) {
+                if (mock == null) {
+                    mock = generatedMock != null ? generatedMock.get() : Mockito.mock(clazz);
+                }
+            }
+        }
+        return mock;
+    }
+
+    /**
+     * @return true if the mock has been created
+     */
+    public boolean isMaterialised() {
+        return mock != null;
+    }
+
+    /**
+     * Reset the stubbings and recorded invocations of the mock (if it has been materialised) so that it may be reused
+     * by another test
+     */
+    public void reset() {
+        if (mock != null) {
+            Mockito.reset(mock);
+        }
+    }
+
+    /**
+     * @return The mock behind a lazy handle, created if it has not yet been materialised, or the object itself if it is
+     * not a lazy handle
+     */
+    public static Object unwrap(Object handleOrMock) {
+        MockitoFactoryBean factory = getLazyHandleFactory(handleOrMock);
+        if (factory == null) {
+            return handleOrMock;
+        }
+        try {
+            return factory.getMock();
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to create the mock of lazy handle for " + factory.clazz.getName(), e);
+        }
+    }
+
+    /**
+     * @return The mock behind a lazy handle, or null if it has not been materialised, or the object itself if it is not
+     * a lazy handle
+     */
+    static Object unwrapIfMaterialised(Object handleOrMock) {
+        MockitoFactoryBean factory = getLazyHandleFactory(handleOrMock);
+        return factory == null ? handleOrMock : factory.mock;
+    }
+
+    private static MockitoFactoryBean getLazyHandleFactory(Object object) {
+        if (object instanceof Advised) {
+            TargetSource targetSource = ((Advised) object).getTargetSource();
+            if (targetSource instanceof LazyMockTargetSource) {
+                return ((LazyMockTargetSource) targetSource).getFactory();
+            }
+        }
+        return null;
+    }
+
+    private Object createLazyHandle() {
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTargetSource(new LazyMockTargetSource());
+        if (clazz.isInterface()) {
+            proxyFactory.addInterface(clazz);
+        } else {
+            proxyFactory.setProxyTargetClass(true);
+        }
+        return proxyFactory.getProxy(clazz.getClassLoader());
+    }
+
+    private class LazyMockTargetSource extends AbstractLazyCreationTargetSource {
+        @Override
+        public synchronized Class<?> getTargetClass() {
+            return clazz;
+        }
+
+        @Override
+        protected Object createObject() throws Exception {
+            return getMock();
+        }
+
+        MockitoFactoryBean getFactory() {
+            return MockitoFactoryBean.this;
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package com.deepmock.mockito;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.TestContext;
+import org.springframework.test.context.support.AbstractTestExecutionListener;
+
+/**
+ * Resets all mocks created by {@link MockitoFactoryBean}s (or substituted by {@link MockReplacingBeanPostProcessor}) in
+ * the test's application context once the test class has finished.  This allows a cached context declaring mocks to be reused by subsequent test classes rather than having to
+ * mark the tests with DirtiesContext.
+ * <pre>
+ *   &#64;TestExecutionListeners({DependencyInjectionTestExecutionListener.class, MockitoFactoryBeanResetListener.class})
+ * </pre>
+ */
+public class MockitoFactoryBeanResetListener extends AbstractTestExecutionListener {
+
+    @Override
+    public void afterTestClass(TestContext testContext) throws Exception {
+        resetMocks(testContext.getApplicationContext());
+    }
+
+    public static void resetMocks(ApplicationContext applicationContext) {
+        for (MockitoFactoryBean factoryBean : applicationContext.getBeansOfType(MockitoFactoryBean.class, false, false).values()) {
+            factoryBean.reset();
+        }
+        for (MockReplacingBeanPostProcessor postProcessor : applicationContext.getBeansOfType(MockReplacingBeanPostProcessor.class, false, false).values()) {
+            postProcessor.reset();
+        }
+    }
+}
@@ -10,6 +10,7 @@ public class MockitoVerifyRule extends TestWatcher {
     private Object testInstance;
     private boolean onlyOnFailure;
     private boolean verifyNoMore;
+    private long timeoutMillis;
 
     /**
      * If the test fails, verify the expected calls have been executed
@@ -32,6 +33,14 @@ public class MockitoVerifyRule extends TestWatcher {
         return new MockitoVerifyRule(testInstance, false, true);
     }
 
+    /**
+     * Verify the expected calls are executed, waiting up to the timeout for them.  Use this when the subject hands work
+     * to other threads; the rule completes as soon as the last expected call is made.
+     */
+    public static MockitoVerifyRule verifyWithin(Object testInstance, long timeoutMillis) {
+        return new MockitoVerifyRule(testInstance, false, false, timeoutMillis);
+    }
+
     /**
      * Instantiate the rule with your test instance (e.g. this) and whether you want to verify only when there is an exception
      * @param testInstance The test instance
@@ -39,9 +48,18 @@ public class MockitoVerifyRule extends TestWatcher {
      * @param verifyNoMore true if you want to verify there are no more unexpected mock invocations
      */
     public MockitoVerifyRule(Object testInstance, boolean onlyOnFailure, boolean verifyNoMore) {
+        this(testInstance, onlyOnFailure, verifyNoMore, 0);
+    }
+
+    /**
+     * @param timeoutMillis How long to wait for the expected calls to be executed
+     * @see #MockitoVerifyRule(Object, boolean, boolean)
+     */
+    public MockitoVerifyRule(Object testInstance, boolean onlyOnFailure, boolean verifyNoMore, long timeoutMillis) {
         this.testInstance = testInstance;
         this.onlyOnFailure = onlyOnFailure;
         this.verifyNoMore = verifyNoMore;
+        this.timeoutMillis = timeoutMillis;
     }
 
     @Override
@@ -59,6 +77,15 @@ public class MockitoVerifyRule extends TestWatcher {
     }
 
     private void verifyAllMocks() {
-        Verify.verifyAllMockExpectations(testInstance, verifyNoMore);
+        if (timeoutMillis <= 0) {
+            Verify.verifyAllMockExpectations(testInstance, verifyNoMore);
+            return;
+        }
+        try {
+            Verify.verifyAllMockExpectationsWithin(testInstance, verifyNoMore, timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted waiting for expected mock calls");
+        }
     }
 }
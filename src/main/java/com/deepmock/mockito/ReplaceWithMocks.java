@@ -0,0 +1,44 @@
+package com.deepmock.mockito;
+
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+
+/**
+ * Declares the bean types that should be replaced by Mockito mocks while the Spring test context is being created.
+ * Every bean whose class is assignable to one of the types is substituted by a mock before it is instantiated, so the
+ * mock is what gets injected into its dependants (including constructor injected final fields) and no object graph
+ * walk is needed at test time.
+ *
+ * The set of replaced types becomes part of the Spring test context cache key, so test classes declaring the same
+ * types share one context.  The annotation must be used together with {@link MockReplacementProfilesResolver} and
+ * {@link MockReplacementContextInitializer}:
+ * <pre>
+ *   &#64;RunWith(SpringJUnit4ClassRunner.class)
+ *   &#64;ContextConfiguration(locations = "/applicationContext.xml", initializers = MockReplacementContextInitializer.class)
+ *   &#64;ActiveProfiles(resolver = MockReplacementProfilesResolver.class)
+ *   &#64;ReplaceWithMocks({MyDao.class, MyRemoteClient.class})
+ *   public final class MyITest {
+ *       &#64;Resource private MyDao myDao; // the mock
+ *   ...
+ * </pre>
+ * @see MockitoFactoryBeanResetListener
+ */
+@Target({ TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface ReplaceWithMocks {
+
+    /**
+     * The bean types to replace with mocks
+     */
+    Class<?>[] value();
+
+    /**
+     * Any other profiles to activate (as the profiles resolver replaces the profiles of ActiveProfiles)
+     */
+    String[] profiles() default {};
+}
@@ -1,6 +1,7 @@
 package com.deepmock.mockito;
 
-import com.deepmock.AnnotationHelper;
+import com.deepmock.TestClassModel;
+import com.deepmock.matcher.TableAnswer;
 import org.mockito.Mock;
 import org.mockito.exceptions.Reporter;
 import org.mockito.exceptions.misusing.NotAMockException;
@@ -15,33 +16,65 @@ import org.mockito.internal.invocation.InvocationsFinder;
 import org.mockito.internal.stubbing.InvocationContainer;
 import org.mockito.internal.stubbing.StubbedInvocationMatcher;
 import org.mockito.internal.util.MockUtil;
+import org.mockito.stubbing.Answer;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.internal.util.StringJoiner.join;
 
+/**
+ * Verification of mocks beyond what Mockito offers.  Lazy {@link MockitoFactoryBean} handles may be passed in place of
+ * their mocks.
+ */
 public final class Verify {
+    private static final int MOST_CALLED_METHODS = 5;
 
     /**
      * Verify all "when" calls were executed for supplied mocks
      */
     public static void verifyExpectations(Object... mocks) {
         for (Object mock : mocks) {
-            verifyExpectationsOn(mock);
+            verifyExpectationsOn(MockitoFactoryBean.unwrap(mock));
         }
     }
 
+    /**
+     * Verify all "when" calls are executed for the supplied mocks within the timeout.  Returns as soon as the last
+     * stubbed invocation has been used (the mocks are listened to, not polled), which suits subjects that hand their
+     * work to other threads.
+     * @throws WantedButNotInvoked if a stubbed invocation has still not been used when the timeout expires
+     */
+    public static void verifyExpectationsWithin(long timeoutMillis, Object... mocks) throws InterruptedException {
+        mocks = unwrap(mocks);
+        StubbingUsageMonitor monitor = new StubbingUsageMonitor(mocks);
+        for (Object mock : mocks) {
+            MockInvocationListeners.addListener(mock, monitor);
+        }
+        try {
+            monitor.awaitAllUsed(timeoutMillis);
+        } finally {
+            for (Object mock : mocks) {
+                MockInvocationListeners.removeListener(mock, monitor);
+            }
+        }
+        verifyExpectations(mocks);
+    }
+
     /**
      * Same General behaviour as Mockito#verifyNoMoreInteractions
      * Adds better logging stating the details of the call that was unexpected
      */
     public static void verifyNoMoreInteractions(Object... mocks) {
         for (Object mock : mocks) {
-            verifyNoMoreInteractionsOn(mock);
+            verifyNoMoreInteractionsOn(MockitoFactoryBean.unwrap(mock));
         }
     }
 
@@ -52,13 +85,101 @@ public final class Verify {
      * @param verifyNoMoreInteraction Whether to verify that there are no more interaction on mocks for this test instance
      */
     public static void verifyAllMockExpectations(Object testInstance, boolean verifyNoMoreInteraction) {
-        Collection<Object> mockFields = AnnotationHelper.findAnnotatedFields(testInstance, Mock.class).values();
+        Collection<Object> mockFields = findMocks(testInstance);
         Verify.verifyExpectations(mockFields.toArray());
         if (verifyNoMoreInteraction) {
             Verify.verifyNoMoreInteractions(mockFields.toArray());
         }
     }
 
+    /**
+     * As {@link #verifyAllMockExpectations(Object, boolean)} but waiting up to the timeout for the "when" calls to be
+     * executed
+     * @see #verifyExpectationsWithin(long, Object...)
+     */
+    public static void verifyAllMockExpectationsWithin(Object testInstance, boolean verifyNoMoreInteraction, long timeoutMillis)
+            throws InterruptedException {
+        Collection<Object> mockFields = findMocks(testInstance);
+        Verify.verifyExpectationsWithin(timeoutMillis, mockFields.toArray());
+        if (verifyNoMoreInteraction) {
+            Verify.verifyNoMoreInteractions(mockFields.toArray());
+        }
+    }
+
+    /**
+     * Verify that no mock annotated with {@link CallBudget} of the given test instance has been invoked more often than
+     * its budget allows
+     * @throws AssertionError listing, for each mock over budget, its most invoked methods
+     */
+    public static void verifyCallBudgets(Object testInstance) {
+        StringBuilder message = new StringBuilder();
+        TestClassModel model = TestClassModel.forClass(testInstance.getClass());
+        for (TestClassModel.AnnotatedField field : model.getAnnotatedFields(CallBudget.class)) {
+            CallBudget budget = field.getField().getAnnotation(CallBudget.class);
+            Object mock = MockitoFactoryBean.unwrap(field.getValue(testInstance));
+            if (mock != null) {
+                appendOverBudget(field.getField().getName(), budget, countInvocationsByMethod(mock), message);
+            }
+        }
+        if (message.length() > 0) {
+            throw new AssertionError("Call budgets exceeded:" + message);
+        }
+    }
+
+    private static List<Map.Entry<Method, Integer>> countInvocationsByMethod(Object mock) {
+        Map<Method, Integer> counts = new HashMap<Method, Integer>();
+        for (Invocation invocation : new MockUtil().getMockHandler(mock).getInvocationContainer().getInvocations()) {
+            Integer count = counts.get(invocation.getMethod());
+            counts.put(invocation.getMethod(), count == null ? 1 : count + 1);
+        }
+        List<Map.Entry<Method, Integer>> sorted = new ArrayList<Map.Entry<Method, Integer>>(counts.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<Method, Integer>>() {
+            @Override
+            public int compare(Map.Entry<Method, Integer> o1, Map.Entry<Method, Integer> o2) {
+                return o2.getValue() - o1.getValue();
+            }
+        });
+        return sorted;
+    }
+
+    private static void appendOverBudget(String mockName, CallBudget budget, List<Map.Entry<Method, Integer>> counts, StringBuilder message) {
+        int total = 0;
+        boolean overBudget = false;
+        for (Map.Entry<Method, Integer> count : counts) {
+            total += count.getValue();
+            overBudget |= budget.perMethod() && count.getValue() > budget.max();
+        }
+        overBudget |= !budget.perMethod() && total > budget.max();
+        if (!overBudget) {
+            return;
+        }
+        message.append("\n").append(mockName).append(": ").append(total).append(" calls, budget ").append(budget.max())
+                .append(budget.perMethod() ? " per method" : "");
+        for (int i = 0; i < Math.min(MOST_CALLED_METHODS, counts.size()); i++) {
+            Method method = counts.get(i).getKey();
+            message.append("\n    ").append(counts.get(i).getValue()).append(" x ")
+                    .append(method.getDeclaringClass().getSimpleName()).append('.').append(method.getName());
+        }
+        if (counts.size() > MOST_CALLED_METHODS) {
+            message.append("\n    ...");
+        }
+    }
+
+    private static Object[] unwrap(Object[] mocks) {
+        Object[] unwrapped = new Object[mocks.length];
+        for (int i = 0; i < mocks.length; i++) {
+            unwrapped[i] = MockitoFactoryBean.unwrap(mocks[i]);
+        }
+        return unwrapped;
+    }
+
+    private static Collection<Object> findMocks(Object testInstance) {
+        TestClassModel model = TestClassModel.forClass(testInstance.getClass());
+        Collection<Object> mocks = TestClassModel.getValues(testInstance, model.getAnnotatedFields(Mock.class));
+        mocks.removeAll(Collections.singleton(null)); // not created, see DeepMockConfiguration#skipUnusedMocks
+        return mocks;
+    }
+
 
     private static void verifyNoMoreInteractionsOn(Object mock) {
         try {
@@ -82,11 +203,22 @@ public final class Verify {
     }
 
     private static void verifyExpectationsOn(Object mock) {
-        InvocationContainer invocationContainer = new MockUtil().getMockHandler(mock).getInvocationContainer();
+        MockHandlerInterface<Object> mockHandler = new MockUtil().getMockHandler(mock);
+        InvocationContainer invocationContainer = mockHandler.getInvocationContainer();
         List<StubbedInvocationMatcher> invocationMatchers = getStubbedInvocationsInOrder(invocationContainer);
         for (StubbedInvocationMatcher invocationMatcher : invocationMatchers) {
             verifyInvoked(invocationMatcher, invocationContainer);
         }
+        verifyTableRowsUsed(mockHandler.getMockSettings().getDefaultAnswer());
+    }
+
+    private static void verifyTableRowsUsed(Answer<Object> defaultAnswer) {
+        if (defaultAnswer instanceof TableAnswer) {
+            String unusedRows = ((TableAnswer) defaultAnswer).describeUnusedRows();
+            if (unusedRows != null) {
+                throw new WantedButNotInvoked("\n" + unusedRows);
+            }
+        }
     }
 
     private static List<StubbedInvocationMatcher> getStubbedInvocationsInOrder(InvocationContainer container) {
@@ -163,4 +295,44 @@ public final class Verify {
 
         });
     }
+
+    /**
+     * Wakes waiting threads whenever a monitored mock is invoked so they can check whether all stubbings are used
+     */
+    private static final class StubbingUsageMonitor implements InvocationListener {
+        private final Object[] mocks;
+
+        private StubbingUsageMonitor(Object[] mocks) {
+            this.mocks = mocks;
+        }
+
+        synchronized void awaitAllUsed(long timeoutMillis) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            long remaining = deadline - System.nanoTime();
+            while (!allStubbingsUsed() && remaining > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        }
+
+        @Override
+        public void beforeInvocation(Invocation invocation) {
+        }
+
+        @Override
+        public synchronized void afterInvocation(Invocation invocation) {
+            notifyAll();
+        }
+
+        private boolean allStubbingsUsed() {
+            for (Object mock : mocks) {
+                for (StubbedInvocationMatcher stubbing : new MockUtil().getMockHandler(mock).getInvocationContainer().getStubbedInvocations()) {
+                    if (!stubbing.wasUsed()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
 }
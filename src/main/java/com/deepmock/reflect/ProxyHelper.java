@@ -3,50 +3,89 @@ package com.deepmock.reflect;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.TargetSource;
+import org.springframework.aop.framework.Advised;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.target.HotSwappableTargetSource;
 import org.springframework.util.ReflectionUtils;
 
 public final class ProxyHelper {
+    private static final ConcurrentMap<Class<?>, Field> CALLBACK_FIELDS = new ConcurrentHashMap<Class<?>, Field>();
+    private static final ConcurrentMap<Class<?>, Field> ADVISED_FIELDS = new ConcurrentHashMap<Class<?>, Field>();
 
     public static boolean isProxy(Object target) {
         return AopUtils.isJdkDynamicProxy(target) || AopUtils.isCglibProxy(target);
     }
 
+    /**
+     * Get the target of the proxy.  Note that for a non static {@link TargetSource} (e.g. lazy-init, prototype or
+     * pooled) this will create or borrow a target.
+     * @see #hasStaticTarget(Object)
+     */
     public static Object getProxyTarget(Object target) {
+        try {
+            return getAdvised(target).getTargetSource().getTarget();
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to get target of proxy", e);
+        }
+    }
+
+    /**
+     * @return true if the target of the proxy can be obtained without creating or borrowing an object, i.e. the same
+     * target serves every invocation
+     */
+    public static boolean hasStaticTarget(Object target) {
+        TargetSource targetSource = getAdvised(target).getTargetSource();
+        return targetSource.isStatic() || targetSource instanceof HotSwappableTargetSource;
+    }
+
+    /**
+     * @return The proxy configuration of a Spring AOP proxy (even if the proxy is opaque)
+     */
+    public static Advised getAdvised(Object target) {
         if (AopUtils.isJdkDynamicProxy(target)) {
-            return getJdkProxyTarget(target);
+            return getJdkProxyAdvised(target);
         } else if (AopUtils.isCglibProxy(target)) {
-            return getCglibProxyTarget(target);
+            return getCglibProxyAdvised(target);
         } else {
             throw new IllegalArgumentException("Object is not a proxy, or is not a proxy we can get the target of");
         }
     }
 
-    private static Object getCglibProxyTarget(Object target) {
+    private static Advised getCglibProxyAdvised(Object target) {
         try {
-            Field field = target.getClass().getDeclaredField("CGLIB$CALLBACK_0");
-            ReflectionUtils.makeAccessible(field);
+            Field field = getCachedField(CALLBACK_FIELDS, target.getClass(), "CGLIB$CALLBACK_0");
             Object interceptor = ReflectionUtils.getField(field, target);
-            Field advisedField = interceptor.getClass().getDeclaredField("advised");
-            ReflectionUtils.makeAccessible(advisedField);
-            ProxyFactory proxyFactory = (ProxyFactory)ReflectionUtils.getField(advisedField, interceptor);
-            return proxyFactory.getTargetSource().getTarget();
+            Field advisedField = getCachedField(ADVISED_FIELDS, interceptor.getClass(), "advised");
+            return (Advised)ReflectionUtils.getField(advisedField, interceptor);
         } catch (Exception e) {
             throw new RuntimeException("Unable to get target of proxy", e);
         }
     }
 
-    private static Object getJdkProxyTarget(Object target) {
+    private static Advised getJdkProxyAdvised(Object target) {
         try {
             InvocationHandler invocationHandler = Proxy.getInvocationHandler(target);
-            Field advisedField = ReflectionUtils.findField(invocationHandler.getClass(), "advised");
-            ReflectionUtils.makeAccessible(advisedField);
-            ProxyFactory advised = (ProxyFactory)ReflectionUtils.getField(advisedField, invocationHandler);
-            return advised.getTargetSource().getTarget();
+            Field advisedField = getCachedField(ADVISED_FIELDS, invocationHandler.getClass(), "advised");
+            return (Advised)ReflectionUtils.getField(advisedField, invocationHandler);
         } catch (Exception e) {
             throw new RuntimeException("Unable to get target of proxy", e);
         }
     }
+
+    private static Field getCachedField(ConcurrentMap<Class<?>, Field> cache, Class<?> clazz, String fieldName) throws NoSuchFieldException {
+        Field field = cache.get(clazz);
+        if (field == null) {
+            field = ReflectionUtils.findField(clazz, fieldName);
+            if (field == null) {
+                throw new NoSuchFieldException(fieldName + " of " + clazz);
+            }
+            ReflectionUtils.makeAccessible(field);
+            cache.put(clazz, field);
+        }
+        return field;
+    }
 }
@@ -1,22 +1,128 @@
 package com.deepmock.reflect;
 
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Reads and writes static fields.  Reflection cannot write a static final field, so those are written through
+ * <code>sun.misc.Unsafe</code>, which is only looked up (reflectively, as it is not a supported API) the first time one is
+ * written.
+ */
 public final class StaticFieldUtil {
 
+    /**
+     * Set a static field, even if it is final.  Note that code that has already been compiled with the value of a
+     * static final field inlined (e.g. a constant, or a caller JIT compiled with the field folded) will not see the new value.
+     */
     public static void setFinalStatic(Class<?> clazz, String fieldName, Object value) {
-        try {
-            Field field = clazz.getDeclaredField(fieldName);
-            field.setAccessible(true);
+        setStatic(getDeclaredField(clazz, fieldName), value);
+    }
 
-            Field modifiersField = Field.class.getDeclaredField("modifiers");
-            modifiersField.setAccessible(true);
-            modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
+    /**
+     * Set a static field, even if it is final (see {@link #setFinalStatic(Class, String, Object)})
+     * @return The previous value of the field, to restore it with once done
+     */
+    public static Object replaceFinalStatic(Class<?> clazz, String fieldName, Object value) {
+        Field field = getDeclaredField(clazz, fieldName);
+        Object previous = getStatic(field);
+        setStatic(field, value);
+        return previous;
+    }
+
+    public static Object getStatic(Field field) {
+        checkStatic(field);
+        ReflectionUtils.makeAccessible(field);
+        return ReflectionUtils.getField(field, null);
+    }
+
+    /**
+     * Set a static field, even if it is final (see {@link #setFinalStatic(Class, String, Object)})
+     */
+    public static void setStatic(Field field, Object value) {
+        checkStatic(field);
+        if (!Modifier.isFinal(field.getModifiers())) {
+            ReflectionUtils.makeAccessible(field);
+            ReflectionUtils.setField(field, null, value);
+            return;
+        }
+        if (field.getType().isPrimitive() && value == null) {
+            throw new IllegalArgumentException("Field " + field + " is primitive and can not be set to null");
+        }
+        try {
+            Object base = UnsafeHolder.STATIC_FIELD_BASE.invoke(field);
+            long offset = (Long) UnsafeHolder.STATIC_FIELD_OFFSET.invoke(field);
+            UnsafeHolder.getPutVolatile(field.getType()).invoke(base, offset, value);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException("Unable to set static final field " + field, t);
+        }
+    }
 
-            field.set(null, value);
-        } catch (Exception e) {
+    private static Field getDeclaredField(Class<?> clazz, String fieldName) {
+        try {
+            return clazz.getDeclaredField(fieldName);
+        } catch (NoSuchFieldException e) {
             throw new RuntimeException(e);
         }
     }
+
+    private static void checkStatic(Field field) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+            throw new IllegalArgumentException("Field " + field + " is not static");
+        }
+    }
+
+    private static final class UnsafeHolder {
+        private static final Class<?>[] PRIMITIVES = {boolean.class, byte.class, short.class, char.class, int.class,
+                long.class, float.class, double.class};
+        private static final MethodHandle STATIC_FIELD_BASE;
+        private static final MethodHandle STATIC_FIELD_OFFSET;
+        private static final MethodHandle PUT_OBJECT_VOLATILE;
+        /**
+         * The putXxxVolatile method of each primitive type
+         */
+        private static final Map<Class<?>, MethodHandle> PUT_PRIMITIVE_VOLATILE = new HashMap<Class<?>, MethodHandle>();
+
+        static {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                Object unsafe = theUnsafe.get(null);
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                STATIC_FIELD_BASE = lookup.findVirtual(unsafeClass, "staticFieldBase",
+                        MethodType.methodType(Object.class, Field.class)).bindTo(unsafe);
+                STATIC_FIELD_OFFSET = lookup.findVirtual(unsafeClass, "staticFieldOffset",
+                        MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+                PUT_OBJECT_VOLATILE = lookup.findVirtual(unsafeClass, "putObjectVolatile",
+                        MethodType.methodType(void.class, Object.class, long.class, Object.class)).bindTo(unsafe);
+                for (Class<?> primitive : PRIMITIVES) {
+                    String name = "put" + Character.toUpperCase(primitive.getName().charAt(0)) + primitive.getName().substring(1) + "Volatile";
+                    PUT_PRIMITIVE_VOLATILE.put(primitive, lookup.findVirtual(unsafeClass, name,
+                            MethodType.methodType(void.class, Object.class, long.class, primitive)).bindTo(unsafe));
+                }
+            } catch (Exception e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * @return A handle taking the static field base, offset and (boxed, for a primitive field) value
+         */
+        static MethodHandle getPutVolatile(Class<?> fieldType) {
+            if (!fieldType.isPrimitive()) {
+                return PUT_OBJECT_VOLATILE;
+            }
+            MethodHandle put = PUT_PRIMITIVE_VOLATILE.get(fieldType);
+            return put.asType(MethodType.methodType(void.class, Object.class, long.class, Object.class));
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package com.deepmock.utils;
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets (in the style of HdrHistogram): values are recorded
+ * with a precision of 1 in 1024 (about three significant digits) from 1ns up to {@link #MAX_VALUE}, larger values
+ * being recorded as the maximum.  The buckets are allocated up front so recording never allocates.
+ *
+ * Not thread safe: record into one histogram per thread and {@link #add} them together.
+ */
+public final class LatencyHistogram {
+    /**
+     * The largest value that can be recorded exactly (about 18 minutes in nanoseconds)
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int SUB_BUCKET_BITS = 11;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+
+    private final long[] counts = new long[index(MAX_VALUE) + 1];
+    private long totalCount;
+    private long maxValue;
+
+    public void recordValue(long value) {
+        long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+        counts[index(clamped)]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, clamped);
+    }
+
+    /**
+     * Add all the values recorded by another histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100
+     * @return The highest value (to the precision of the histogram) at or below which the percentile of recorded values
+     * lie, or 0 if none have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= countAtPercentile) {
+                return Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    private static int index(long value) {
+        int magnitude = Math.max(0, (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1));
+        if (magnitude == 0) {
+            return (int) value;
+        }
+        return magnitude * SUB_BUCKET_HALF + (int) (value >>> magnitude);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int magnitude = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - magnitude * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << magnitude) - 1;
+    }
+}
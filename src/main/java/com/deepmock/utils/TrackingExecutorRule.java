@@ -0,0 +1,72 @@
+package com.deepmock.utils;
+
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Use this test rule with the {@link TrackingExecutorService}s held by the fields of your test instance.  After a test
+ * that passed, it waits for their tasks to complete and fails the test if any task threw.  After every test, it shuts
+ * their pools down.
+ * <pre>
+ *   &#64;Rule
+ *   public TrackingExecutorRule executorRule = new TrackingExecutorRule(this);
+ * </pre>
+ */
+public class TrackingExecutorRule extends TestWatcher {
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private Object testInstance;
+    private long timeoutMillis;
+
+    public TrackingExecutorRule(Object testInstance) {
+        this(testInstance, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param timeoutMillis How long to wait for the outstanding tasks of each executor to complete
+     */
+    public TrackingExecutorRule(Object testInstance, long timeoutMillis) {
+        this.testInstance = testInstance;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    protected void succeeded(Description description) {
+        try {
+            for (TrackingExecutorService executor : findExecutors()) {
+                executor.awaitQuiescence(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted waiting for executor tasks to complete");
+        }
+    }
+
+    @Override
+    protected void finished(Description description) {
+        for (TrackingExecutorService executor : findExecutors()) {
+            executor.shutdownPool();
+        }
+    }
+
+    private List<TrackingExecutorService> findExecutors() {
+        final List<TrackingExecutorService> executors = new ArrayList<TrackingExecutorService>();
+        ReflectionUtils.doWithFields(testInstance.getClass(), new ReflectionUtils.FieldCallback() {
+            @Override
+            public void doWith(Field field) throws IllegalAccessException {
+                ReflectionUtils.makeAccessible(field);
+                Object value = field.get(testInstance);
+                if (value instanceof TrackingExecutorService) {
+                    executors.add((TrackingExecutorService) value);
+                }
+            }
+        }, ReflectionUtils.COPYABLE_FIELDS);
+        return executors;
+    }
+}
@@ -0,0 +1,207 @@
+package com.deepmock.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An executor to deep inject in place of a real one when the subject fans work out to other threads.  Unlike
+ * {@link com.deepmock.matcher.CallsRunnable} tasks really run concurrently (on a bounded pool), but the test can wait
+ * for all of them to complete with {@link #awaitQuiescence(long, TimeUnit)}, which also fails if any task threw.
+ * Declare it as a Spy, with the type of the subject's field, so that it is injected (the spy shares the pool and
+ * counters of the instance it spies on), and add a {@link TrackingExecutorRule} to fail the test if a task threw and to
+ * shut the pool down after each test:
+ * <pre>
+ *   &#64;Rule
+ *   public TrackingExecutorRule executorRule = new TrackingExecutorRule(this);
+ *
+ *   &#64;Spy
+ *   ExecutorService executor = new TrackingExecutorService(4);
+ *   ...
+ *   subject.processAll(items);
+ *   ((TrackingExecutorService) executor).awaitQuiescence(5, SECONDS);
+ *   verify(daoMock, times(items.size())).save(any(Item.class));
+ * </pre>
+ * The exceptions of tasks submitted for a {@link Future} are recorded too, whether or not the subject examines the
+ * future.  The pool's threads are platform daemon threads, as virtual threads are not available on the Java versions
+ * this library supports, and they time out when idle so that an executor never shut down does not keep them.
+ * The tracking methods are final, so that calling them on a spy is not recorded as an invocation of it.
+ */
+public class TrackingExecutorService extends AbstractExecutorService {
+    private static final long KEEP_ALIVE_SECONDS = 1;
+
+    private final ExecutorService pool;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong running = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    private final Object quiescence = new Object();
+
+    public TrackingExecutorService(int threads) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "deepmock-tracking-executor-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        this.pool = pool;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        submitted.incrementAndGet();
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    running.incrementAndGet();
+                    try {
+                        command.run();
+                        recordFutureFailure(command);
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    } finally {
+                        running.decrementAndGet();
+                        complete();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            complete(); // rejected
+            throw e;
+        }
+    }
+
+    private void recordFutureFailure(Runnable command) throws InterruptedException {
+        if (command instanceof Future && ((Future<?>) command).isDone()) {
+            try {
+                ((Future<?>) command).get();
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            } catch (CancellationException e) {
+                // cancelled by the subject
+            }
+        }
+    }
+
+    private void complete() {
+        completed.incrementAndGet();
+        synchronized (quiescence) {
+            quiescence.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until every task submitted so far has completed
+     * @throws AssertionError if tasks are still outstanding after the timeout, or if any task threw an exception
+     */
+    public final void awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (quiescence) {
+            long remaining;
+            while (outstanding() > 0) {
+                remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new AssertionError(outstanding() + " tasks still outstanding (" + running.get()
+                            + " running) after " + unit.toMillis(timeout) + "ms");
+                }
+                TimeUnit.NANOSECONDS.timedWait(quiescence, remaining);
+            }
+        }
+        assertNoFailures();
+    }
+
+    /**
+     * @throws AssertionError if any task has thrown an exception
+     */
+    public final void assertNoFailures() {
+        synchronized (failures) {
+            if (!failures.isEmpty()) {
+                AssertionError error = new AssertionError(failures.size() + " tasks failed, the first with " + failures.get(0));
+                error.initCause(failures.get(0));
+                throw error;
+            }
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getRunningCount() {
+        return running.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * @return The tasks submitted but not yet completed (i.e. queued or running)
+     */
+    public long getOutstandingCount() {
+        return outstanding();
+    }
+
+    private long outstanding() {
+        long completedCount = completed.get();
+        return submitted.get() - completedCount;
+    }
+
+    /**
+     * @return The exceptions thrown by tasks so far
+     */
+    public List<Throwable> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<Throwable>(failures);
+        }
+    }
+
+    /**
+     * Stop the pool, whatever the subject does with the executor (see {@link TrackingExecutorRule})
+     */
+    final void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return pool.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+}